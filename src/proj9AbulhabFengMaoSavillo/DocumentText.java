@@ -0,0 +1,147 @@
+/*
+ * File: DocumentText.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the DocumentText class, which reads the text of a
+ * code area's document without copying it into one String.
+ */
+
+package proj9AbulhabFengMaoSavillo;
+
+import org.fxmisc.richtext.model.Paragraph;
+import org.fxmisc.richtext.model.StyledDocument;
+import org.fxmisc.richtext.model.TwoDimensional;
+
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * This class presents a snapshot of a RichTextFX document as a CharSequence,
+ * reading chars straight from the text of each paragraph, with a newline
+ * between paragraphs. The paragraph holding an offset is found through the
+ * document's own position index, so creating a DocumentText costs nothing
+ * however long the document is. Document snapshots never change, so the text
+ * may be read on any thread, but one DocumentText should only be read by one
+ * thread at a time.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class DocumentText implements CharSequence
+{
+    private final StyledDocument<?, ?, ?> document;
+    private final List<? extends Paragraph<?, ?, ?>> paragraphs;
+    private final int length;
+
+    // the paragraph read last, so reading chars in order needs no search
+    private int currentStart;
+    private String currentText;
+
+    /**
+     * Creates a DocumentText over the given document, which must not change
+     *
+     * @param document the document to read, such as a snapshot of a code area's content
+     */
+    public DocumentText(StyledDocument<?, ?, ?> document)
+    {
+        this.document = document;
+        this.paragraphs = document.getParagraphs();
+        this.length = document.length();
+        this.moveTo(0, 0);
+    }
+
+    /**
+     * Returns the number of chars in the text
+     */
+    @Override
+    public int length()
+    {
+        return this.length;
+    }
+
+    /**
+     * Returns the char at the given offset
+     *
+     * @param index the offset of the char
+     * @return the char, which is a newline at the end of each paragraph but the last
+     */
+    @Override
+    public char charAt(int index)
+    {
+        if (index < 0 || index >= this.length)
+            throw new IndexOutOfBoundsException("Index " + index + " out of range 0.." + this.length);
+
+        int column = index - this.currentStart;
+        if (column < 0 || column > this.currentText.length())
+        {
+            TwoDimensional.Position position = this.document.offsetToPosition(index, TwoDimensional.Bias.Forward);
+            this.moveTo(position.getMajor(), index - position.getMinor());
+            column = index - this.currentStart;
+        }
+        return column == this.currentText.length() ? '\n' : this.currentText.charAt(column);
+    }
+
+    /**
+     * Copies the chars between the given offsets into a new String
+     */
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        StringBuilder chars = new StringBuilder(end - start);
+        for (int i = start; i < end; i++)
+            chars.append(this.charAt(i));
+        return chars.toString();
+    }
+
+    /**
+     * Returns a Reader over the text, for code that reads its input through a Reader
+     */
+    public Reader openReader()
+    {
+        return new Reader()
+        {
+            private int position;
+
+            @Override
+            public int read(char[] buffer, int offset, int count)
+            {
+                if (this.position == DocumentText.this.length)
+                    return -1;
+
+                int end = Math.min(this.position + count, DocumentText.this.length);
+                for (int i = this.position; i < end; i++)
+                    buffer[offset++] = DocumentText.this.charAt(i);
+                count = end - this.position;
+                this.position = end;
+                return count;
+            }
+
+            @Override
+            public void close() { }
+        };
+    }
+
+    /**
+     * Copies the whole text into a String
+     */
+    @Override
+    public String toString()
+    {
+        return this.subSequence(0, this.length).toString();
+    }
+
+    /**
+     * Makes the given paragraph the one chars are read from
+     *
+     * @param paragraph the index of the paragraph
+     * @param start     the offset of its first char
+     */
+    private void moveTo(int paragraph, int start)
+    {
+        this.currentStart = start;
+        this.currentText = this.paragraphs.isEmpty() ? "" : this.paragraphs.get(paragraph).getText();
+    }
+}
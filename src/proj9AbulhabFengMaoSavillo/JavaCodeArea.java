@@ -16,16 +16,15 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.LineNumberFactory;
-import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.PlainTextChange;
 import org.fxmisc.richtext.model.StyleSpansBuilder;
-import org.reactfx.Subscription;
+import org.fxmisc.richtext.model.TwoDimensional;
 import org.reactfx.util.FxTimer;
 
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 
 /**
@@ -45,17 +44,28 @@ public class JavaCodeArea extends CodeArea
      */
     private ContextMenu contextMenu;
 
+    /**
+     * For each paragraph, whether the last highlighting pass reached its start
+     * with no match, and no failed attempt at a string or block comment, reading
+     * past it. Highlighting can restart at such a paragraph and give the same
+     * styles as highlighting the whole text would.
+     */
+    private boolean[] isolatedParagraphs = {true};
+    private int paragraphCount = 1;
+
+    /**
+     * The range of text changed since the last highlighting pass, or -1 if none
+     */
+    private int damageStart = -1;
+    private int damageEnd = -1;
+
     /**
      * Creates a new empty JavaCodeArea
      * @param menu the right-click menu
      */
     public JavaCodeArea(ObservableList<MenuItem> menu){
-        // Handles coloring the text by syntax immediately
-        this.handleTextChange();
         // Sets up updating syntax coloring whenever contents update
-        this.setOnKeyPressed(event -> this.handleTextChange());
-        // Sets up highlighting for syntax
-        this.highlightText();
+        this.handleTextChange();
         // Enables line numbering
         this.setParagraphGraphicFactory(LineNumberFactory.get(this));
         // Sets up the right-click menu
@@ -109,106 +119,188 @@ public class JavaCodeArea extends CodeArea
 
     }
     /**
-     * a list of key words to be highlighted
+     * Returns whether a string or block comment starts somewhere in a range of
+     * the text where the highlighter found no match; the attempt to match it failed,
+     * after reading arbitrarily far ahead
+     *
+     * @param text the text
+     * @param from the offset of the first char of the range
+     * @param to   the offset just past the last char of the range
      */
-    private static final String[] KEYWORDS = new String[] {
-            "abstract", "assert", "boolean", "break", "byte",
-            "case", "catch", "char", "class", "const",
-            "continue", "default", "do", "double", "else",
-            "enum", "extends", "final", "finally", "float",
-            "for", "goto", "if", "implements", "import",
-            "instanceof", "int", "interface", "long", "native",
-            "new", "package", "private", "protected", "public",
-            "return", "short", "static", "strictfp", "super",
-            "switch", "synchronized", "this", "throw", "throws",
-            "transient", "try", "void", "volatile", "while", "var"
-    };
+    private static boolean hasFailedAttempt(CharSequence text, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            char c = text.charAt(i);
+            if (c == '"' || (c == '/' && i + 1 < text.length() && text.charAt(i + 1) == '*'))
+                return true;
+        }
+        return false;
+    }
 
     /**
-     * regular expressions of characters to be highlighted
+     * Handles the text change action.
+     * Records the range each change damages as it happens, and re-highlights
+     * the damaged paragraphs once the changes pause.
      */
-    private static final String KEYWORD_PATTERN = "\\b(" + String.join("|", KEYWORDS) + ")\\b";
-    private static final String PAREN_PATTERN = "\\(|\\)";
-    private static final String BRACE_PATTERN = "\\{|\\}";
-    private static final String BRACKET_PATTERN = "\\[|\\]";
-    private static final String SEMICOLON_PATTERN = "\\;";
-    private static final String STRING_PATTERN = "\"([^\"\\\\]|\\\\.)*\"";
-    private static final String COMMENT_PATTERN = "//[^\n]*" + "|" + "/\\*(.|\\R)*?\\*/";
-    private static final String INTEGER_PATTERN = "(?<![\\w])(?<![\\d.])[0-9]+(?![\\d.])(?![\\w])";
+    private void handleTextChange()
+    {
+        this.plainTextChanges().subscribe(this::recordChange);
 
-    /**
-     * patterns to be highlighted
-     */
-    private static final Pattern PATTERN = Pattern.compile(
-            "(?<KEYWORD>" + KEYWORD_PATTERN + ")"
-                    + "|(?<PAREN>" + PAREN_PATTERN + ")"
-                    + "|(?<BRACE>" + BRACE_PATTERN + ")"
-                    + "|(?<BRACKET>" + BRACKET_PATTERN + ")"
-                    + "|(?<SEMICOLON>" + SEMICOLON_PATTERN + ")"
-                    + "|(?<STRING>" + STRING_PATTERN + ")"
-                    + "|(?<COMMENT>" + COMMENT_PATTERN + ")"
-                    + "|(?<INTEGER>" + INTEGER_PATTERN + ")"
-    );
+        this
+
+                // plain changes = ignore style changes that are emitted when syntax highlighting is reapplied
+                // multi plain changes = save computation by not rerunning the code multiple times
+                // when making multiple changes (e.g. renaming a method at multiple parts in file)
+                .multiPlainChanges()
+
+                // do not emit an event until 500 ms have passed since the last emission of previous stream
+                .successionEnds(Duration.ofMillis(500))
+
+                // run the following code block when previous stream emits an event
+                .subscribe(ignore -> this.highlightDamage());
+    }
 
     /**
-     * Computes the highlighting of substrings of text to return the style of each substring.
+     * Grows the damaged range to cover a change, and brings the paragraph
+     * states up to date; the paragraphs the change adds are not isolated
      *
-     * @param text string to compute highlighting of
-     * @return StyleSpans Collection Object
+     * @param change the change, just made
      */
-    private static StyleSpans<Collection<String>> computeHighlighting(String text)
+    private void recordChange(PlainTextChange change)
     {
-        Matcher matcher = PATTERN.matcher(text);
-        int lastKwEnd = 0;
-        StyleSpansBuilder<Collection<String>> spansBuilder
-                = new StyleSpansBuilder<>();
-        while (matcher.find())
+        int position = change.getPosition();
+        if (this.damageStart < 0)
+        {
+            this.damageStart = position;
+            this.damageEnd = change.getInsertionEnd();
+        }
+        else
         {
-            String styleClass =
-                    matcher.group("KEYWORD") != null ? "keyword" :
-                            matcher.group("PAREN") != null ? "paren" :
-                                    matcher.group("BRACE") != null ? "brace" :
-                                            matcher.group("BRACKET") != null ? "bracket" :
-                                                    matcher.group("SEMICOLON") != null ? "semicolon" :
-                                                            matcher.group("STRING") != null ? "string" :
-                                                                    matcher.group("COMMENT") != null ? "comment" :
-                                                                            matcher.group("INTEGER") != null ? "integer" :
-                                                                                    null; /* never happens */
-            assert styleClass != null;
-            spansBuilder.add(Collections.emptyList(), matcher.start() - lastKwEnd);
-            spansBuilder.add(Collections.singleton(styleClass), matcher.end() - matcher.start());
-            lastKwEnd = matcher.end();
+            this.damageStart = Math.min(mapOffset(this.damageStart, change), position);
+            this.damageEnd = Math.max(mapOffset(this.damageEnd, change), change.getInsertionEnd());
         }
-        spansBuilder.add(Collections.emptyList(), text.length() - lastKwEnd);
-        return spansBuilder.create();
+
+        //the paragraph of the change keeps its start; the ones after it are replaced
+        int paragraph = this.offsetToPosition(position, TwoDimensional.Bias.Forward).getMajor();
+        int removed = countLineBreaks(change.getRemoved());
+        int inserted = countLineBreaks(change.getInserted());
+        int tail = this.paragraphCount - (paragraph + 1 + removed);
+        int newCount = this.paragraphCount - removed + inserted;
+        if (newCount > this.isolatedParagraphs.length)
+            this.isolatedParagraphs = Arrays.copyOf(this.isolatedParagraphs,
+                                                    Math.max(newCount, this.isolatedParagraphs.length * 2));
+        System.arraycopy(this.isolatedParagraphs, paragraph + 1 + removed,
+                         this.isolatedParagraphs, paragraph + 1 + inserted, tail);
+        Arrays.fill(this.isolatedParagraphs, paragraph + 1, paragraph + 1 + inserted, false);
+        this.paragraphCount = newCount;
     }
 
     /**
-     * Helper function to highlight the text within the StyledCodeArea.
+     * Returns where an offset from before a change is after it; offsets in
+     * the removed text move to the end of the inserted text
      */
-    private void highlightText()
+    private static int mapOffset(int offset, PlainTextChange change)
     {
-        this.setStyleSpans(0, computeHighlighting(this.getText()));
+        if (offset < change.getPosition())
+            return offset;
+        if (offset >= change.getRemovalEnd())
+            return offset + change.getNetLength();
+        return change.getInsertionEnd();
     }
 
     /**
-     * Handles the text change action.
-     * Listens to the text changes and highlights the keywords real-time.
+     * Counts the newlines in the given text
      */
-    private void handleTextChange()
+    private static int countLineBreaks(String text)
     {
-        Subscription cleanupWhenNoLongerNeedIt = this
+        int breaks = 0;
+        for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1))
+            breaks++;
+        return breaks;
+    }
 
-                // plain changes = ignore style changes that are emitted when syntax highlighting is reapplied
-                // multi plain changes = save computation by not rerunning the code multiple times
-                // when making multiple changes (e.g. renaming a method at multiple parts in file)
-                .multiPlainChanges()
+    /**
+     * Re-highlights the text changed since the last pass with a JavaHighlighter,
+     * which finds the matches of its PATTERN in linear time. Matching resumes at
+     * the start of the nearest isolated paragraph at or before the damage, and
+     * stops at the first paragraph start after it that is isolated both before
+     * and after the changes, since the styles from there on cannot differ.
+     * Only the styles of the text matched again are replaced.
+     */
+    private void highlightDamage()
+    {
+        if (this.damageStart < 0)
+            return;
+        int damageEnd = this.damageEnd;
+        int paragraph = this.offsetToPosition(this.damageStart, TwoDimensional.Bias.Forward).getMajor();
+        this.damageStart = this.damageEnd = -1;
+        while (paragraph > 0 && !this.isolatedParagraphs[paragraph])
+            paragraph--;
 
-                // do not emit an event until 500 ms have passed since the last emission of previous stream
-                .successionEnds(Duration.ofMillis(500))
+        DocumentText text = this.getTextSnapshot();
+        int from = this.getAbsolutePosition(paragraph, 0);
+        JavaHighlighter highlighter = new JavaHighlighter(text);
+        highlighter.reset(from);
 
-                // run the following code block when previous stream emits an event
-                .subscribe(ignore -> this.highlightText());
+        StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+        int to = text.length();     // where the pass stops
+        int styledTo = from;        // the end of the last span added
+        int checkedTo = from;       // the end of the text looked at for failed attempts
+        boolean failed = false;     // whether an attempt has failed since from
+        int next = paragraph + 1;   // the next paragraph whose start is reached
+        int nextStart = from + this.getParagraph(paragraph).length() + 1;
+        boolean found = highlighter.find();
+        passing:
+        while (true)
+        {
+            //the paragraphs starting before the next match are isolated unless an attempt failed
+            int matchStart = found ? highlighter.start() : text.length();
+            while (next < this.paragraphCount && nextStart <= matchStart)
+            {
+                failed = failed || hasFailedAttempt(text, checkedTo, nextStart);
+                checkedTo = nextStart;
+                if (!failed && nextStart > damageEnd && this.isolatedParagraphs[next])
+                {
+                    to = nextStart;
+                    break passing;
+                }
+                this.isolatedParagraphs[next] = !failed;
+                nextStart += this.getParagraph(next).length() + 1;
+                next++;
+            }
+            if (!found)
+                break;
+
+            //the paragraphs starting inside the match are not
+            failed = failed || hasFailedAttempt(text, checkedTo, matchStart);
+            checkedTo = highlighter.end();
+            while (next < this.paragraphCount && nextStart < highlighter.end())
+            {
+                this.isolatedParagraphs[next] = false;
+                nextStart += this.getParagraph(next).length() + 1;
+                next++;
+            }
+
+            spansBuilder.add(Collections.emptyList(), matchStart - styledTo);
+            spansBuilder.add(Collections.singleton(highlighter.getStyleClass()), highlighter.end() - matchStart);
+            styledTo = highlighter.end();
+            found = highlighter.find();
+        }
+        spansBuilder.add(Collections.emptyList(), to - styledTo);
+        this.setStyleSpans(from, spansBuilder.create());
+    }
+
+    /**
+     * Returns the current text of this code area as a CharSequence that reads
+     * from a snapshot of the document, without copying the text into a String.
+     * Later edits do not change it, so it may be read on a background thread.
+     *
+     * @return the text as it is now
+     */
+    public DocumentText getTextSnapshot()
+    {
+        return new DocumentText(this.getContent().snapshot());
     }
 
     /**
@@ -0,0 +1,556 @@
+/*
+ * File: JavaHighlighter.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the JavaHighlighter class, which finds the parts of
+ * Java code to color in one pass over the text, without regular expressions.
+ */
+
+package proj9AbulhabFengMaoSavillo;
+
+import proj9AbulhabFengMaoSavillo.bantam.util.CompilationException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class finds, in order, the keywords, parentheses, braces, brackets,
+ * semicolons, strings, comments and integers of a Java text, giving exactly
+ * the matches and style classes the regular expression PATTERN gives when
+ * Matcher.find() is called over the same text with transparent bounds.
+ * Each char is looked at a bounded number of times: a keyword is read at
+ * most one char past the longest keyword, and once a string or block comment
+ * is found to be unterminated, the later ones that must fail the same way
+ * are not read again. So highlighting takes linear time and no stack,
+ * however long the comments and strings are.
+ *
+ * Run from the command line as
+ * <pre>
+ *   JavaHighlighter [-seed=N] [-count=N] [-length=N] [file...]
+ * </pre>
+ * to check the matches against those of PATTERN over the given files and
+ * over random texts built from the fragments the patterns are sensitive to.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class JavaHighlighter
+{
+    /**
+     * a list of key words to be highlighted
+     */
+    static final String[] KEYWORDS = new String[] {
+            "abstract", "assert", "boolean", "break", "byte",
+            "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else",
+            "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import",
+            "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public",
+            "return", "short", "static", "strictfp", "super",
+            "switch", "synchronized", "this", "throw", "throws",
+            "transient", "try", "void", "volatile", "while", "var"
+    };
+
+    /**
+     * regular expressions of characters to be highlighted
+     */
+    private static final String KEYWORD_PATTERN = "\\b(" + String.join("|", KEYWORDS) + ")\\b";
+    private static final String PAREN_PATTERN = "\\(|\\)";
+    private static final String BRACE_PATTERN = "\\{|\\}";
+    private static final String BRACKET_PATTERN = "\\[|\\]";
+    private static final String SEMICOLON_PATTERN = "\\;";
+    private static final String STRING_PATTERN = "\"([^\"\\\\]|\\\\.)*\"";
+    private static final String COMMENT_PATTERN = "//[^\n]*" + "|" + "/\\*(.|\\R)*?\\*/";
+    private static final String INTEGER_PATTERN = "(?<![\\w])(?<![\\d.])[0-9]+(?![\\d.])(?![\\w])";
+
+    /**
+     * patterns to be highlighted, which define the matches the highlighter finds
+     */
+    static final Pattern PATTERN = Pattern.compile(
+            "(?<KEYWORD>" + KEYWORD_PATTERN + ")"
+                    + "|(?<PAREN>" + PAREN_PATTERN + ")"
+                    + "|(?<BRACE>" + BRACE_PATTERN + ")"
+                    + "|(?<BRACKET>" + BRACKET_PATTERN + ")"
+                    + "|(?<SEMICOLON>" + SEMICOLON_PATTERN + ")"
+                    + "|(?<STRING>" + STRING_PATTERN + ")"
+                    + "|(?<COMMENT>" + COMMENT_PATTERN + ")"
+                    + "|(?<INTEGER>" + INTEGER_PATTERN + ")"
+    );
+
+    private static final Set<String> KEYWORD_SET = new HashSet<>(Arrays.asList(KEYWORDS));
+    private static final int MAX_KEYWORD_LENGTH = 12; // "synchronized"
+
+    // the fragments random texts are built from when checking against PATTERN
+    private static final String[] FRAGMENTS = {"\n", "\r\n", "\r", " ", "\t", "\"", "\\", "\\\"",
+            "\\\n", "/", "*", "/*", "*/", "//", "(", ")", "{", "}", "[", "]", ";", ".", "_",
+            "0", "12", "3.5", "x9", "int", "interface", "do", "double", "var", "this", "If",
+            "\u00e9", "\u0301", "\u2028", "\u0085", "\uD835\uDC00", "\uD800", "a\"b\"", "/* c */"};
+
+    private final CharSequence text;
+    private int position;           // where to look for the next match
+    private int start = -1;         // the bounds of the last match
+    private int end = -1;
+    private String styleClass;      // the style class of the last match
+    private int failedStringEnd;    // a string starting before here, at a '"' the last
+                                    // failed string read past, fails as well
+    private boolean commentsFail;   // true once a block comment was found unterminated
+
+    /**
+     * Creates a JavaHighlighter that looks for matches from the start of the text
+     *
+     * @param text the text to highlight, which must not change while it is read
+     */
+    public JavaHighlighter(CharSequence text)
+    {
+        this.text = text;
+    }
+
+    /**
+     * Makes the next find() look for matches from the given offset on, still
+     * reading the chars before it to tell where keywords and integers begin
+     *
+     * @param from the offset to look from
+     */
+    public void reset(int from)
+    {
+        this.position = from;
+        this.start = this.end = -1;
+        this.styleClass = null;
+        this.failedStringEnd = 0;
+        this.commentsFail = false;
+    }
+
+    /**
+     * Finds the next match
+     *
+     * @return true if there is one, false if the end of the text was reached
+     */
+    public boolean find()
+    {
+        CharSequence text = this.text;
+        int length = text.length();
+        for (int i = this.position; i < length; i++)
+        {
+            char c = text.charAt(i);
+            int matchEnd = -1;
+            String styleClass = null;
+            switch (c)
+            {
+                case '(':
+                case ')':
+                    matchEnd = i + 1;
+                    styleClass = "paren";
+                    break;
+                case '{':
+                case '}':
+                    matchEnd = i + 1;
+                    styleClass = "brace";
+                    break;
+                case '[':
+                case ']':
+                    matchEnd = i + 1;
+                    styleClass = "bracket";
+                    break;
+                case ';':
+                    matchEnd = i + 1;
+                    styleClass = "semicolon";
+                    break;
+                case '"':
+                    matchEnd = this.matchString(i);
+                    styleClass = "string";
+                    break;
+                case '/':
+                    matchEnd = this.matchComment(i);
+                    styleClass = "comment";
+                    break;
+                default:
+                    if (c >= 'a' && c <= 'z')
+                    {
+                        matchEnd = this.matchKeyword(i);
+                        styleClass = "keyword";
+                    }
+                    else if (c >= '0' && c <= '9')
+                    {
+                        matchEnd = this.matchInteger(i);
+                        styleClass = "integer";
+                    }
+            }
+            if (matchEnd >= 0)
+            {
+                this.start = i;
+                this.end = this.position = matchEnd;
+                this.styleClass = styleClass;
+                return true;
+            }
+        }
+        this.position = length;
+        return false;
+    }
+
+    /**
+     * Returns the offset of the first char of the last match
+     */
+    public int start()
+    {
+        return this.start;
+    }
+
+    /**
+     * Returns the offset just past the last char of the last match
+     */
+    public int end()
+    {
+        return this.end;
+    }
+
+    /**
+     * Returns the style class of the last match
+     */
+    public String getStyleClass()
+    {
+        return this.styleClass;
+    }
+
+    /**
+     * Matches a keyword at the given offset, which holds a lowercase letter
+     *
+     * @return the end of the keyword, or -1 if none starts there
+     */
+    private int matchKeyword(int offset)
+    {
+        if (offset > 0 && isWordBefore(this.text, offset))
+            return -1;
+
+        //keywords are all lowercase letters, so the keyword must be the whole run of them
+        int limit = Math.min(this.text.length(), offset + MAX_KEYWORD_LENGTH + 1);
+        int wordEnd = offset + 1;
+        while (wordEnd < limit && this.text.charAt(wordEnd) >= 'a' && this.text.charAt(wordEnd) <= 'z')
+            wordEnd++;
+        if (wordEnd - offset > MAX_KEYWORD_LENGTH || !KEYWORD_SET.contains(this.text.subSequence(offset, wordEnd)
+                                                                                    .toString()))
+            return -1;
+        if (wordEnd < this.text.length() && isWordAt(this.text, wordEnd))
+            return -1;
+        return wordEnd;
+    }
+
+    /**
+     * Matches an integer at the given offset, which holds a digit: a whole run
+     * of digits with neither a word char nor a '.' on either side
+     *
+     * @return the end of the integer, or -1 if none starts there
+     */
+    private int matchInteger(int offset)
+    {
+        if (offset > 0 && isAsciiWordOrDot(this.text.charAt(offset - 1)))
+            return -1;
+        int digitsEnd = offset + 1;
+        while (digitsEnd < this.text.length() && isDigit(this.text.charAt(digitsEnd)))
+            digitsEnd++;
+        if (digitsEnd < this.text.length() && isAsciiWordOrDot(this.text.charAt(digitsEnd)))
+            return -1;
+        return digitsEnd;
+    }
+
+    /**
+     * Matches a string at the given offset, which holds a '"'. A backslash
+     * escapes the char after it unless that ends a line; a string with a
+     * backslash ending a line, or with no closing quote, is not matched.
+     *
+     * @return the end of the string, or -1 if it is not terminated
+     */
+    private int matchString(int offset)
+    {
+        //a '"' the last failed string read past was escaped in it, so reading on from it fails the same way
+        if (offset < this.failedStringEnd)
+            return -1;
+        int length = this.text.length();
+        int i = offset + 1;
+        while (i < length)
+        {
+            char c = this.text.charAt(i);
+            if (c == '"')
+                return i + 1;
+            if (c == '\\')
+            {
+                if (i + 1 == length || isLineTerminator(this.text.charAt(i + 1)))
+                    break;
+                i += 2;
+            }
+            else
+                i++;
+        }
+        this.failedStringEnd = i;
+        return -1;
+    }
+
+    /**
+     * Matches a comment at the given offset, which holds a '/': a line
+     * comment up to the next newline, or a block comment up to the first
+     * '*' '/' after its opening
+     *
+     * @return the end of the comment, or -1 if no comment starts there
+     */
+    private int matchComment(int offset)
+    {
+        int length = this.text.length();
+        if (offset + 1 == length)
+            return -1;
+        char next = this.text.charAt(offset + 1);
+        if (next == '/')
+        {
+            int i = offset + 2;
+            while (i < length && this.text.charAt(i) != '\n')
+                i++;
+            return i;
+        }
+        if (next != '*' || this.commentsFail)
+            return -1;
+        for (int i = offset + 2; i + 1 < length; i++)
+        {
+            if (this.text.charAt(i) == '*' && this.text.charAt(i + 1) == '/')
+                return i + 2;
+        }
+        //no later block comment can be terminated either
+        this.commentsFail = true;
+        return -1;
+    }
+
+    /**
+     * Returns whether the code point before the given offset makes a word
+     * boundary there impossible for a word starting at the offset, as \b
+     * decides it: a letter, digit or '_', or a non-spacing mark after one
+     */
+    private static boolean isWordBefore(CharSequence text, int offset)
+    {
+        int c = Character.codePointBefore(text, offset);
+        return isWordChar(c) || (Character.getType(c) == Character.NON_SPACING_MARK &&
+                hasBaseCharacter(text, offset - 1));
+    }
+
+    /**
+     * Returns whether the code point at the given offset, just after a word,
+     * continues it, as \b decides it; a non-spacing mark there always does
+     */
+    private static boolean isWordAt(CharSequence text, int offset)
+    {
+        int c = Character.codePointAt(text, offset);
+        return isWordChar(c) || (Character.getType(c) == Character.NON_SPACING_MARK &&
+                hasBaseCharacter(text, offset));
+    }
+
+    /**
+     * Returns whether the run of non-spacing marks ending at the given offset
+     * follows a letter or digit
+     */
+    private static boolean hasBaseCharacter(CharSequence text, int offset)
+    {
+        for (int i = offset; i >= 0; i--)
+        {
+            int c = Character.codePointAt(text, i);
+            if (Character.isLetterOrDigit(c))
+                return true;
+            if (Character.getType(c) != Character.NON_SPACING_MARK)
+                return false;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the code point counts as part of a word for \b
+     */
+    private static boolean isWordChar(int c)
+    {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * Returns whether the char is in [\w.]: an ASCII letter, digit, '_' or '.'
+     */
+    private static boolean isAsciiWordOrDot(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_' || c == '.';
+    }
+
+    /**
+     * Returns whether the char is an ASCII digit
+     */
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Returns whether the char ends a line for the '.' of a regular expression
+     */
+    private static boolean isLineTerminator(char c)
+    {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Returns the style class of the text a matcher of PATTERN last matched
+     *
+     * @param matcher a matcher of PATTERN that has just found a match
+     * @return the style class
+     */
+    static String getStyleClass(Matcher matcher)
+    {
+        String styleClass =
+                matcher.group("KEYWORD") != null ? "keyword" :
+                        matcher.group("PAREN") != null ? "paren" :
+                                matcher.group("BRACE") != null ? "brace" :
+                                        matcher.group("BRACKET") != null ? "bracket" :
+                                                matcher.group("SEMICOLON") != null ? "semicolon" :
+                                                        matcher.group("STRING") != null ? "string" :
+                                                                matcher.group("COMMENT") != null ? "comment" :
+                                                                        matcher.group("INTEGER") != null ? "integer" :
+                                                                                null; /* never happens */
+        assert styleClass != null;
+        return styleClass;
+    }
+
+    /**
+     * Checks the highlighter against PATTERN over the files given as
+     * command-line arguments and over random texts, looking for matches
+     * from the start of each text and from a random offset in it
+     */
+    public static void main(String[] args)
+    {
+        long seed = 0;
+        int count = 10000;
+        int length = 200;
+        int next = 0;
+        for (; next < args.length && args[next].startsWith("-"); next++)
+        {
+            if (args[next].startsWith("-seed="))
+                seed = Long.parseLong(args[next].substring("-seed=".length()));
+            else if (args[next].startsWith("-count="))
+                count = Integer.parseInt(args[next].substring("-count=".length()));
+            else if (args[next].startsWith("-length="))
+                length = Integer.parseInt(args[next].substring("-length=".length()));
+            else
+            {
+                System.err.println("Unknown option " + args[next]);
+                System.exit(-1);
+            }
+        }
+
+        Random random = new Random(seed);
+        int mismatches = 0;
+        int overflows = 0;
+        for (; next < args.length; next++)
+        {
+            String text;
+            try
+            {
+                text = new String(Files.readAllBytes(Paths.get(args[next])));
+            }
+            catch (IOException e)
+            {
+                throw new CompilationException("File " + args[next] + " could not be read.");
+            }
+            long[] regexTime = new long[1];
+            long[] highlighterTime = new long[1];
+            String difference;
+            try
+            {
+                difference = compare(text, 0, regexTime, highlighterTime);
+            }
+            catch (StackOverflowError e)
+            {
+                System.out.println(args[next] + ": skipped, the regex overflowed the stack");
+                overflows++;
+                continue;
+            }
+            if (difference == null)
+            {
+                System.out.println(String.format("%s: same matches; regex %.3f ms, highlighter %.3f ms",
+                                                 args[next], regexTime[0] / 1e6, highlighterTime[0] / 1e6));
+                continue;
+            }
+            System.out.println(args[next] + ": " + difference);
+            mismatches++;
+        }
+
+        long[] unusedTime = new long[1];
+        for (int i = 0; i < count; i++)
+        {
+            StringBuilder builder = new StringBuilder();
+            while (builder.length() < length)
+                builder.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            String text = builder.toString();
+            for (int from : new int[] {0, random.nextInt(text.length() + 1)})
+            {
+                String difference;
+                try
+                {
+                    difference = compare(text, from, unusedTime, unusedTime);
+                }
+                catch (StackOverflowError e)
+                {
+                    overflows++;
+                    continue;
+                }
+                if (difference != null && mismatches++ < 10)
+                    System.out.println("Random text " + i + " from " + from + ": " + difference + "\n" + text);
+            }
+        }
+        System.out.println(String.format("%d random texts of %d chars checked; %d mismatches, " +
+                                                 "%d texts skipped where the regex overflowed the stack",
+                                         count, length, mismatches, overflows));
+        if (mismatches > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Compares the matches of PATTERN and of a JavaHighlighter over a text
+     *
+     * @param text            the text
+     * @param from            the offset to start looking for matches at
+     * @param regexTime       an array to add the nanoseconds PATTERN took to
+     * @param highlighterTime an array to add the nanoseconds the highlighter took to
+     * @return a description of the first difference, or null if there is none
+     */
+    private static String compare(String text, int from, long[] regexTime, long[] highlighterTime)
+    {
+        long startTime = System.nanoTime();
+        List<String> expected = new ArrayList<>();
+        Matcher matcher = PATTERN.matcher(text);
+        matcher.useTransparentBounds(true);
+        matcher.region(from, text.length());
+        while (matcher.find())
+            expected.add(matcher.start() + "-" + matcher.end() + " " + getStyleClass(matcher));
+        regexTime[0] += System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        List<String> actual = new ArrayList<>();
+        JavaHighlighter highlighter = new JavaHighlighter(text);
+        highlighter.reset(from);
+        while (highlighter.find())
+            actual.add(highlighter.start() + "-" + highlighter.end() + " " + highlighter.getStyleClass());
+        highlighterTime[0] += System.nanoTime() - startTime;
+
+        for (int i = 0; i < Math.max(expected.size(), actual.size()); i++)
+        {
+            String wanted = i < expected.size() ? expected.get(i) : "nothing";
+            String found = i < actual.size() ? actual.get(i) : "nothing";
+            if (!wanted.equals(found))
+                return "match " + i + " should be " + wanted + " but is " + found;
+        }
+        return null;
+    }
+}
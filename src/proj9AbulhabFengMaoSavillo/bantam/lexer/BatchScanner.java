@@ -0,0 +1,285 @@
+/*
+ * File: BatchScanner.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the BatchScanner class, which scans many Bantam Java
+ * files in parallel.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import proj9AbulhabFengMaoSavillo.bantam.util.CompilationException;
+import proj9AbulhabFengMaoSavillo.bantam.util.Error;
+import proj9AbulhabFengMaoSavillo.bantam.util.ErrorHandler;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * The BatchScanner class scans a list of files on a work-stealing pool.
+ * Every file gets its own ErrorHandler, so errors in one file never show up
+ * in another, and the results come back in the order the files were given.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class BatchScanner
+{
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+
+    private final int parallelism;
+    private final int maxErrors;
+
+    /**
+     * Creates a new BatchScanner that uses one thread per available processor
+     */
+    public BatchScanner()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new BatchScanner that uses the given number of threads
+     *
+     * @param parallelism the number of files to scan at once
+     */
+    public BatchScanner(int parallelism)
+    {
+        this(parallelism, ErrorHandler.DEFAULT_MAX_ERRORS);
+    }
+
+    /**
+     * Creates a new BatchScanner that uses the given number of threads and
+     * keeps at most the given number of errors for each file
+     *
+     * @param parallelism the number of files to scan at once
+     * @param maxErrors   the most errors to keep for each file
+     */
+    public BatchScanner(int parallelism, int maxErrors)
+    {
+        this.parallelism = parallelism;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Scans all the given files
+     *
+     * @param filenames the files to scan
+     * @return the result for each file, in the same order as the filenames
+     */
+    public List<Result> scan(List<String> filenames)
+    {
+        List<Result> results = new ArrayList<>(filenames.size());
+        this.scan(filenames, false, results::add);
+        return results;
+    }
+
+    /**
+     * Scans all the given files, handing each result to the consumer, in the
+     * order of the filenames, as soon as it and all the ones before it are done.
+     * Only a couple of files per thread are scanned ahead of the consumer, so
+     * results that keep their tokens need not all be held at once.
+     *
+     * @param filenames  the files to scan
+     * @param keepTokens whether the results should keep the tokens of their files
+     * @param consumer   the consumer of the results, called on this thread
+     */
+    public void scan(List<String> filenames, boolean keepTokens, Consumer<Result> consumer)
+    {
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try
+        {
+            Deque<ForkJoinTask<Result>> pending = new ArrayDeque<>();
+            Iterator<String> remaining = filenames.iterator();
+            while (remaining.hasNext() || !pending.isEmpty())
+            {
+                while (remaining.hasNext() && pending.size() < 2 * this.parallelism)
+                {
+                    String filename = remaining.next();
+                    pending.add(pool.submit(() -> scanFile(filename, this.maxErrors, keepTokens)));
+                }
+                consumer.accept(pending.removeFirst().join());
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Scans one file with its own ErrorHandler
+     *
+     * @param filename   the file to scan
+     * @param maxErrors  the most errors to keep
+     * @param keepTokens whether to keep the tokens in the result
+     * @return the result of scanning it
+     */
+    static Result scanFile(String filename, int maxErrors, boolean keepTokens)
+    {
+        ErrorHandler errorHandler = new ErrorHandler(maxErrors);
+        long[] kindCounts = new long[KINDS.length];
+        TokenBuffer tokens = null;
+        try
+        {
+            Scanner scanner = new Scanner(filename, errorHandler);
+            if (keepTokens)
+            {
+                tokens = scanner.scanToBuffer();
+                for (int i = 0; i < tokens.size(); i++)
+                    kindCounts[tokens.getKind(i).ordinal()]++;
+            }
+            else
+            {
+                Token.Kind kind;
+                while ((kind = scanner.scanKind()) != Token.Kind.EOF)
+                    kindCounts[kind.ordinal()]++;
+            }
+        }
+        catch (CompilationException e)
+        {
+            errorHandler.register(Error.Kind.LEX_ERROR, filename, -1, e.getMessage());
+            tokens = null;
+        }
+
+        return new Result(filename, new File(filename).length(), kindCounts, tokens,
+                          errorHandler.getErrorList(), errorHandler.getDroppedCount());
+    }
+
+    /**
+     * Scans the files given on the command line in parallel, printing the
+     * errors of each file in order followed by the combined throughput
+     */
+    public static void main(String[] args)
+    {
+        //make sure at least one filename was given
+        if (args.length < 1)
+        {
+            System.err.println("Missing input filename");
+            System.exit(-1);
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = new BatchScanner().scan(Arrays.asList(args));
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long bytes = 0;
+        long tokens = 0;
+        long errors = 0;
+        long dropped = 0;
+        for (Result result : results)
+        {
+            System.out.println(String.format("%s: %d tokens, %d errors",
+                                             result.getFilename(),
+                                             result.getTokenCount(),
+                                             result.getErrorList().size() + result.getDroppedErrorCount()));
+            result.getErrorList().forEach(error -> System.out.println("    " + error));
+            if (result.getDroppedErrorCount() > 0)
+                System.out.println(String.format("    ... and %d more", result.getDroppedErrorCount()));
+            bytes += result.getByteCount();
+            tokens += result.getTokenCount();
+            errors += result.getErrorList().size() + result.getDroppedErrorCount();
+            dropped += result.getDroppedErrorCount();
+        }
+
+        System.out.println("-----------------------------------------------");
+        System.out.println(String.format("%d files, %d bytes, %d tokens, %d errors (%d not listed) in %.3f s",
+                                         results.size(), bytes, tokens, errors, dropped, seconds));
+        System.out.println(String.format("%.1f MB/s, %.0f tokens/s", bytes / 1e6 / seconds, tokens / seconds));
+    }
+
+    /**
+     * The outcome of scanning one file
+     */
+    public static class Result
+    {
+        private final String filename;
+        private final long byteCount;
+        private final long[] kindCounts;
+        private final TokenBuffer tokens;
+        private final List<Error> errorList;
+        private final int droppedErrorCount;
+
+        Result(String filename, long byteCount, long[] kindCounts, TokenBuffer tokens,
+               List<Error> errorList, int droppedErrorCount)
+        {
+            this.filename = filename;
+            this.byteCount = byteCount;
+            this.kindCounts = kindCounts;
+            this.tokens = tokens;
+            this.errorList = errorList;
+            this.droppedErrorCount = droppedErrorCount;
+        }
+
+        /**
+         * Returns the name of the file scanned
+         */
+        public String getFilename()
+        {
+            return this.filename;
+        }
+
+        /**
+         * Returns the size of the file in bytes
+         */
+        public long getByteCount()
+        {
+            return this.byteCount;
+        }
+
+        /**
+         * Returns the number of tokens in the file, not counting EOF
+         */
+        public long getTokenCount()
+        {
+            long tokenCount = 0;
+            for (long count : this.kindCounts)
+                tokenCount += count;
+            return tokenCount;
+        }
+
+        /**
+         * Returns the number of tokens of the given kind in the file
+         */
+        public long getTokenCount(Token.Kind kind)
+        {
+            return this.kindCounts[kind.ordinal()];
+        }
+
+        /**
+         * Returns the tokens of the file, or null if they were not kept or
+         * the file could not be read
+         */
+        public TokenBuffer getTokens()
+        {
+            return this.tokens;
+        }
+
+        /**
+         * Returns the errors found in the file, up to the cap
+         */
+        public List<Error> getErrorList()
+        {
+            return this.errorList;
+        }
+
+        /**
+         * Returns the number of errors found in the file past the cap, which are not listed
+         */
+        public int getDroppedErrorCount()
+        {
+            return this.droppedErrorCount;
+        }
+    }
+}
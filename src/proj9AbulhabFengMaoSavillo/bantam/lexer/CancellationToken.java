@@ -0,0 +1,52 @@
+/*
+ * File: CancellationToken.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the CancellationToken class, which lets one thread ask
+ * a scan running on another thread to stop.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * A CancellationToken is shared between a Scanner and whoever started it.
+ * Cancelling it does not stop the scan at once; the Scanner checks it every
+ * so many chars and throws a CancellationException when it finds it set.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class CancellationToken
+{
+    private volatile boolean cancelled;
+
+    /**
+     * Asks every scan checking this token to stop
+     */
+    public void cancel()
+    {
+        this.cancelled = true;
+    }
+
+    /**
+     * Returns whether cancel() has been called
+     */
+    public boolean isCancelled()
+    {
+        return this.cancelled;
+    }
+
+    /**
+     * Throws a CancellationException if cancel() has been called
+     */
+    public void throwIfCancelled()
+    {
+        if (this.cancelled)
+            throw new CancellationException("Scanning was cancelled");
+    }
+}
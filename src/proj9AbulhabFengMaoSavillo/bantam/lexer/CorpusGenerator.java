@@ -0,0 +1,554 @@
+/*
+ * File: CorpusGenerator.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the CorpusGenerator class, which writes random but
+ * plausible Bantam Java programs of any size for testing and benchmarking
+ * the lexer.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * The CorpusGenerator class writes classes of fields and methods with nested
+ * blocks, deep expressions, comments and strings, some of them near the
+ * length limit of the Scanner, so that every kind of token turns up in a few
+ * kilobytes. A given fraction of the statements holds a malformed token
+ * instead. The same seed and error rate always give the same text.
+ * Run from the command line as
+ * <pre>
+ *   CorpusGenerator [-seed=N] [-errors=RATE] size[K|M|G] [file]
+ * </pre>
+ * to write a corpus of that many chars, or a few more, to the file or to
+ * standard output.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class CorpusGenerator
+{
+    /**
+     * The fraction of statements that hold a malformed token, unless told otherwise
+     */
+    public static final double DEFAULT_ERROR_RATE = 0.01;
+
+    private static final int MAX_STRING_LENGTH = 5000; // the longest string the Scanner accepts
+    private static final int MAX_BLOCK_DEPTH = 3;
+    private static final int MAX_EXPRESSION_DEPTH = 6;
+    private static final int MAX_NESTED_CLASSES = 2;
+
+    private static final String[] WORDS = {"count", "total", "node", "item", "value", "index",
+            "buffer", "list", "left", "right", "next", "size", "result", "flag", "name", "dream",
+            "key", "x", "y", "i", "j", "k"};
+    private static final String[] CLASS_WORDS = {"Node", "List", "Tree", "Dream", "Counter",
+            "Buffer", "Stack", "Queue", "Table", "Main", "Shape", "Point"};
+    private static final String[] TYPES = {"int", "boolean", "String", "Object"};
+    private static final String[] BINARY_OPERATORS = {"&&", "||", "+", "-", "*", "/", "%",
+            "<", "<=", ">", ">=", "==", "!="};
+    private static final String[] ESCAPES = {"\\n", "\\t", "\\\"", "\\\\", "\\f", "\\r"};
+    private static final String UNEXPECTED_CHARS = "#@$`~^?";
+
+    private final Random random;
+    private final double errorRate;
+    private final StringBuilder text;
+    private int indent;
+    private int classDepth;
+    private int classCount;
+    private long written;   // the chars written before the class being built
+    private long size;      // the chars to write
+
+    /**
+     * Creates a CorpusGenerator with the default error rate
+     *
+     * @param seed the seed of the random choices
+     */
+    public CorpusGenerator(long seed)
+    {
+        this(seed, DEFAULT_ERROR_RATE);
+    }
+
+    /**
+     * Creates a CorpusGenerator
+     *
+     * @param seed      the seed of the random choices
+     * @param errorRate the fraction of statements that hold a malformed token
+     */
+    public CorpusGenerator(long seed, double errorRate)
+    {
+        this.random = new Random(seed);
+        this.errorRate = errorRate;
+        this.text = new StringBuilder();
+    }
+
+    /**
+     * Writes classes until the given number of chars have been written. Once
+     * they have, no more members are started; the classes still open are
+     * closed, so the corpus runs over the size by at most one member and the
+     * closing braces of its classes.
+     *
+     * @param out  where to write the corpus
+     * @param size the number of chars to write
+     * @return the number of chars written
+     */
+    public long generate(Appendable out, long size) throws IOException
+    {
+        this.written = 0;
+        this.size = size;
+        while (this.written < size)
+        {
+            this.text.setLength(0);
+            this.appendClass();
+            out.append(this.text);
+            this.written += this.text.length();
+        }
+        return this.written;
+    }
+
+    /**
+     * Returns a corpus of the given number of chars, or a few more
+     *
+     * @param size the number of chars to generate
+     * @return the corpus
+     */
+    public String generate(int size)
+    {
+        StringBuilder corpus = new StringBuilder(size + 4096);
+        try
+        {
+            this.generate(corpus, size);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return corpus.toString();
+    }
+
+    /**
+     * Writes a corpus as described above
+     */
+    public static void main(String[] args)
+    {
+        long seed = 0;
+        double errorRate = DEFAULT_ERROR_RATE;
+        int next = 0;
+        for (; next < args.length && args[next].startsWith("-"); next++)
+        {
+            if (args[next].startsWith("-seed="))
+                seed = Long.parseLong(args[next].substring("-seed=".length()));
+            else if (args[next].startsWith("-errors="))
+                errorRate = Double.parseDouble(args[next].substring("-errors=".length()));
+            else
+                break;
+        }
+
+        //make sure a size was given
+        if (next == args.length)
+        {
+            System.err.println("Missing corpus size");
+            System.exit(-1);
+        }
+
+        String size = args[next].toUpperCase();
+        int shift = size.endsWith("K") ? 10 : size.endsWith("M") ? 20 : size.endsWith("G") ? 30 : 0;
+        if (shift > 0)
+            size = size.substring(0, size.length() - 1);
+
+        try (Writer writer = next + 1 < args.length ?
+                Files.newBufferedWriter(Paths.get(args[next + 1])) :
+                new BufferedWriter(new OutputStreamWriter(System.out)))
+        {
+            new CorpusGenerator(seed, errorRate).generate(writer, Long.parseLong(size) << shift);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Corpus could not be written: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Appends a class of fields, methods and sometimes classes nested in it
+     */
+    private void appendClass()
+    {
+        if (this.chance(0.5))
+            this.appendBlockComment(this.chance(0.1));
+        this.line("class " + this.className() +
+                  (this.chance(0.5) ? " extends " + this.pick(CLASS_WORDS) : "") + " {");
+        this.indent++;
+        this.classDepth++;
+
+        int members = 2 + this.random.nextInt(6);
+        for (int i = 0; i < members && this.written + this.text.length() < this.size; i++)
+        {
+            double choice = this.random.nextDouble();
+            if (choice < 0.1 && this.classDepth < MAX_NESTED_CLASSES)
+                this.appendClass();
+            else if (choice < 0.4)
+                this.line(this.pick(TYPES) + " " + this.identifier() +
+                          (this.chance(0.5) ? " = " + this.expression(0) : "") + ";");
+            else
+                this.appendMethod();
+        }
+
+        this.classDepth--;
+        this.indent--;
+        this.line("}");
+        this.text.append('\n');
+    }
+
+    /**
+     * Appends a method with a few parameters and statements
+     */
+    private void appendMethod()
+    {
+        StringBuilder header = new StringBuilder(this.pick(TYPES)).append(' ').append(this.identifier()).append('(');
+        int parameters = this.random.nextInt(4);
+        for (int i = 0; i < parameters; i++)
+        {
+            if (i > 0)
+                header.append(", ");
+            header.append(this.pick(TYPES)).append(' ').append(this.identifier());
+            if (this.chance(0.2))
+                header.append("[]");
+        }
+        this.line(header.append(") {").toString());
+        this.appendStatements(1);
+        this.line("}");
+    }
+
+    /**
+     * Appends a few statements one level further in
+     *
+     * @param depth how deep the blocks holding them are nested
+     */
+    private void appendStatements(int depth)
+    {
+        this.indent++;
+        int statements = 1 + this.random.nextInt(depth < MAX_BLOCK_DEPTH ? 4 : 2);
+        for (int i = 0; i < statements; i++)
+            this.appendStatement(depth);
+        this.indent--;
+    }
+
+    /**
+     * Appends a statement, a comment, or a statement holding a malformed token
+     *
+     * @param depth how deep the block holding it is nested
+     */
+    private void appendStatement(int depth)
+    {
+        if (this.chance(this.errorRate))
+        {
+            this.appendMalformed();
+            return;
+        }
+
+        boolean nest = depth < MAX_BLOCK_DEPTH;
+        switch (this.random.nextInt(nest ? 16 : 11))
+        {
+            case 0:
+                this.line("var " + this.identifier() + " = " + this.expression(0) + ";");
+                break;
+            case 1:
+            case 2:
+                this.line(this.lvalue() + " = " + this.expression(0) + ";");
+                break;
+            case 3:
+                this.line(this.chance(0.5) ? this.identifier() + "++;" : "--" + this.identifier() + ";");
+                break;
+            case 4:
+                this.line(this.call() + ";");
+                break;
+            case 5:
+                this.line("return " + this.expression(0) + ";");
+                break;
+            case 6:
+                this.line("// " + this.words(3 + this.random.nextInt(10)));
+                break;
+            case 7:
+                this.appendBlockComment(this.chance(0.05));
+                break;
+            case 8:
+                this.line(this.identifier() + " = " + this.string(this.chance(0.03)) + ";");
+                break;
+            case 9:
+                this.line("var " + this.identifier() + " = " + this.deepExpression() + ";");
+                break;
+            case 10:
+                this.line("break;");
+                break;
+            case 11:
+            case 12:
+                this.line("if (" + this.expression(0) + ") {");
+                this.appendStatements(depth + 1);
+                if (this.chance(0.5))
+                {
+                    this.line("}");
+                    this.line("else {");
+                    this.appendStatements(depth + 1);
+                }
+                this.line("}");
+                break;
+            case 13:
+                this.line("while (" + this.expression(0) + ") {");
+                this.appendStatements(depth + 1);
+                this.line("}");
+                break;
+            case 14:
+                String counter = this.identifier();
+                this.line("for (" + counter + " = 0; " + counter + " < " + this.expression(1) + "; " +
+                          counter + "++) {");
+                this.appendStatements(depth + 1);
+                this.line("}");
+                break;
+            default:
+                this.line("for (var " + this.identifier() + " : " + this.identifier() + ") {");
+                this.appendStatements(depth + 1);
+                this.line("}");
+                break;
+        }
+    }
+
+    /**
+     * Appends a statement holding one malformed token: an unexpected char, a
+     * lone & or |, an illegal escape, an unterminated or too long string, or
+     * an integer too big to parse
+     */
+    private void appendMalformed()
+    {
+        String target = this.identifier();
+        switch (this.random.nextInt(6))
+        {
+            case 0:
+                char c = UNEXPECTED_CHARS.charAt(this.random.nextInt(UNEXPECTED_CHARS.length()));
+                this.line(target + " = " + this.identifier() + " " + c + " " + this.identifier() + ";");
+                break;
+            case 1:
+                this.line(target + " = " + this.identifier() + (this.chance(0.5) ? " & " : " | ") +
+                          this.identifier() + ";");
+                break;
+            case 2:
+                this.line(target + " = \"" + this.words(2) + " \\q " + this.words(2) + "\";");
+                break;
+            case 3:
+                this.line(target + " = \"" + this.words(4) + ";");
+                break;
+            case 4:
+                StringBuilder tooLong = new StringBuilder("\"");
+                int length = MAX_STRING_LENGTH + this.random.nextInt(100);
+                while (tooLong.length() <= length)
+                    tooLong.append(this.pick(WORDS)).append(' ');
+                this.line(target + " = " + tooLong.append('"') + ";");
+                break;
+            default:
+                this.line(target + " = " + (2147483648L + this.random.nextInt(Integer.MAX_VALUE)) + ";");
+                break;
+        }
+    }
+
+    /**
+     * Appends a block comment of a few lines, or a long one of many lines
+     *
+     * @param isLong whether to make it a few kilobytes long
+     */
+    private void appendBlockComment(boolean isLong)
+    {
+        this.line(this.chance(0.5) ? "/**" : "/*");
+        int lines = isLong ? 50 + this.random.nextInt(100) : 1 + this.random.nextInt(4);
+        for (int i = 0; i < lines; i++)
+            this.line(" * " + this.words(3 + this.random.nextInt(12)));
+        this.line(" */");
+    }
+
+    /**
+     * Returns an expression of operators over primaries, nested up to the maximum depth
+     *
+     * @param depth how deep the expression is nested already
+     */
+    private String expression(int depth)
+    {
+        if (depth >= MAX_EXPRESSION_DEPTH || this.chance(0.35))
+            return this.primary(depth);
+
+        switch (this.random.nextInt(6))
+        {
+            case 0:
+                return "!" + this.primary(depth + 1);
+            case 1:
+                return "-" + this.primary(depth + 1);
+            case 2:
+                return this.identifier() + " instanceof " + this.pick(CLASS_WORDS);
+            case 3:
+                return "(" + this.expression(depth + 1) + ")";
+            default:
+                return this.expression(depth + 1) + " " + this.pick(BINARY_OPERATORS) + " " +
+                       this.expression(depth + 1);
+        }
+    }
+
+    /**
+     * Returns an expression nested in dozens of parentheses, built by a loop
+     * rather than by recursion
+     */
+    private String deepExpression()
+    {
+        int depth = 20 + this.random.nextInt(60);
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+            expression.append('(').append(this.primary(MAX_EXPRESSION_DEPTH)).append(' ')
+                      .append(this.pick(BINARY_OPERATORS)).append(' ');
+        expression.append(this.primary(MAX_EXPRESSION_DEPTH));
+        for (int i = 0; i < depth; i++)
+            expression.append(')');
+        return expression.toString();
+    }
+
+    /**
+     * Returns a constant, a name, a call, an allocation, a cast or an array access
+     *
+     * @param depth how deep the expression is nested already
+     */
+    private String primary(int depth)
+    {
+        switch (this.random.nextInt(depth < MAX_EXPRESSION_DEPTH ? 10 : 6))
+        {
+            case 0:
+                return Integer.toString(this.chance(0.8) ? this.random.nextInt(1000) :
+                                                this.random.nextInt(Integer.MAX_VALUE));
+            case 1:
+                return this.chance(0.5) ? "true" : "false";
+            case 2:
+                return this.string(false);
+            case 3:
+                return "new " + this.pick(CLASS_WORDS) + "()";
+            case 4:
+            case 5:
+                return this.identifier();
+            case 6:
+                return this.call();
+            case 7:
+                return "cast(" + this.pick(CLASS_WORDS) + ", " + this.expression(depth + 1) + ")";
+            case 8:
+                return this.identifier() + "[" + this.expression(depth + 1) + "]";
+            default:
+                return this.identifier() + "." + this.identifier();
+        }
+    }
+
+    /**
+     * Returns a method call on a name, with a few simple arguments
+     */
+    private String call()
+    {
+        StringBuilder call = new StringBuilder(this.identifier()).append('.').append(this.identifier()).append('(');
+        int arguments = this.random.nextInt(4);
+        for (int i = 0; i < arguments; i++)
+        {
+            if (i > 0)
+                call.append(", ");
+            call.append(this.primary(MAX_EXPRESSION_DEPTH));
+        }
+        return call.append(')').toString();
+    }
+
+    /**
+     * Returns a name, a field of a name or an element of an array, to assign to
+     */
+    private String lvalue()
+    {
+        switch (this.random.nextInt(4))
+        {
+            case 0:
+                return this.identifier() + "." + this.identifier();
+            case 1:
+                return this.identifier() + "[" + this.primary(MAX_EXPRESSION_DEPTH) + "]";
+            default:
+                return this.identifier();
+        }
+    }
+
+    /**
+     * Returns a string constant of words and escapes
+     *
+     * @param isLong whether to make it just short of the Scanner's length limit
+     */
+    private String string(boolean isLong)
+    {
+        StringBuilder string = new StringBuilder("\"");
+        int length = isLong ? MAX_STRING_LENGTH - 200 - this.random.nextInt(300) : this.random.nextInt(40);
+        while (string.length() < length)
+        {
+            if (this.chance(0.1))
+                string.append(this.pick(ESCAPES));
+            else
+                string.append(this.pick(WORDS)).append(' ');
+        }
+        return string.append('"').toString();
+    }
+
+    /**
+     * Returns the given number of words separated by spaces
+     */
+    private String words(int count)
+    {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++)
+        {
+            if (i > 0)
+                words.append(' ');
+            words.append(this.pick(WORDS));
+        }
+        return words.toString();
+    }
+
+    /**
+     * Returns a name, sometimes with a number after it
+     */
+    private String identifier()
+    {
+        String word = this.pick(WORDS);
+        return this.chance(0.3) ? word + this.random.nextInt(100) : word;
+    }
+
+    /**
+     * Returns a new class name
+     */
+    private String className()
+    {
+        return this.pick(CLASS_WORDS) + this.classCount++;
+    }
+
+    /**
+     * Appends a line at the current indentation
+     */
+    private void line(String line)
+    {
+        for (int i = 0; i < this.indent; i++)
+            this.text.append("    ");
+        this.text.append(line).append('\n');
+    }
+
+    private String pick(String[] choices)
+    {
+        return choices[this.random.nextInt(choices.length)];
+    }
+
+    private boolean chance(double probability)
+    {
+        return this.random.nextDouble() < probability;
+    }
+}
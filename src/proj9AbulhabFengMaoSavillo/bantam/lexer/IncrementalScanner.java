@@ -0,0 +1,371 @@
+/*
+ * File: IncrementalScanner.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the IncrementalScanner class, which keeps the tokens of
+ * an edited text up to date by re-scanning only the lines an edit damages.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import proj9AbulhabFengMaoSavillo.bantam.util.Error;
+import proj9AbulhabFengMaoSavillo.bantam.util.ErrorHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The IncrementalScanner class holds a text, its tokens and, for every line,
+ * the state the lexer is in at the start of that line. After an edit, scanning
+ * resumes at the nearest line before the edit that starts in the normal state,
+ * and stops as soon as it reaches a token that also started a token before
+ * the edit; the tokens from there on are kept and only shifted. Like a
+ * full scan, the tokens end at an eof char in the text found between tokens,
+ * so edits after it change no tokens.
+ * <p>
+ * Only the damaged range is scanned again, but the kept tokens, line starts,
+ * line states and errors after it hold absolute offsets, lines and token
+ * indexes, so an edit that changes the length of the text also shifts them:
+ * a pass of array copies and additions over everything after the edit.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class IncrementalScanner
+{
+    /**
+     * The state of the lexer at the start of a line
+     */
+    public enum LineState
+    {
+        NORMAL,     // between tokens
+        IN_COMMENT, // inside a comment that started on an earlier line
+        IN_STRING   // inside a string that started on an earlier line
+    }
+
+    private static final LineState[] LINE_STATES = LineState.values();
+
+    private final String filename;
+    private final StringBuilder text;
+    private final TokenBuffer tokens;
+    private final List<TokenError> errors; // ordered by token index
+
+    private final LineIndex lines;
+    private byte[] lineStates; // the LineState ordinal at the start of each line, for the first getLineCount()
+
+    private int eofOffset;   // where scanning stopped: an eof char between tokens, or the text length
+    private int relexedFrom; // the index of the first token re-scanned by the last edit
+    private int relexedTo;   // the index just past the last token re-scanned by the last edit
+
+    /**
+     * Creates a new IncrementalScanner and scans the given text
+     *
+     * @param filename the name of the file the text belongs to, for error messages
+     * @param text     the text to scan
+     */
+    public IncrementalScanner(String filename, CharSequence text)
+    {
+        this.filename = filename;
+        this.text = new StringBuilder(text.length());
+        this.lines = new LineIndex();
+        this.tokens = new TokenBuffer(this.text, this.lines);
+        this.errors = new ArrayList<>();
+        this.lineStates = new byte[]{(byte) LineState.NORMAL.ordinal()};
+
+        this.edit(0, 0, text);
+    }
+
+    /**
+     * Replaces a range of the text and brings the tokens up to date
+     *
+     * @param offset        the offset of the first char to replace
+     * @param removedLength the number of chars to replace
+     * @param inserted      the chars to put in their place
+     */
+    public void edit(int offset, int removedLength, CharSequence inserted)
+    {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > this.text.length())
+            throw new IndexOutOfBoundsException("Edit of " + removedLength + " chars at " + offset +
+                                                " is outside the text of length " + this.text.length());
+
+        int delta = inserted.length() - removedLength;
+        int oldDamageEnd = offset + removedLength;
+        int newDamageEnd = offset + inserted.length();
+
+        //a full scan stops at an eof char between tokens, so nothing after it is scanned
+        if (offset > this.eofOffset)
+        {
+            int lastUndamagedLine = this.lines.getLine(offset - 1);
+            this.text.replace(offset, oldDamageEnd, inserted.toString());
+            this.updateLines(offset, removedLength, inserted.length(), lastUndamagedLine);
+            this.relexedFrom = this.relexedTo = this.tokens.size();
+            return;
+        }
+
+        //resume at the start of a line, before the first token whose scanning looked at the
+        //damaged chars, that is not inside a token
+        int lastUndamagedLine = this.lines.getLine(Math.max(offset - 1, 0));
+        int firstDamaged = this.tokens.findTokenAt(offset - 1);
+        int resumeLine = lastUndamagedLine;
+        if (firstDamaged < this.tokens.size())
+            resumeLine = Math.min(resumeLine, this.lines.getLine(this.tokens.getStart(firstDamaged)));
+        while (resumeLine > 0 && this.lineStates[resumeLine] != LineState.NORMAL.ordinal())
+            resumeLine--;
+        int resumeOffset = this.lines.getLineStart(resumeLine);
+        int keep = this.tokens.findTokenAt(resumeOffset);
+
+        this.text.replace(offset, oldDamageEnd, inserted.toString());
+        int lineDelta = this.updateLines(offset, removedLength, inserted.length(), lastUndamagedLine);
+
+        //re-scan until a token starts where an undamaged old token started
+        ErrorHandler handler = new ErrorHandler();
+        Scanner scanner = new Scanner(new SourceFile(this.text, this.filename, resumeOffset, resumeLine + 1),
+                                      handler);
+        TokenBuffer relexed = new TokenBuffer(this.text);
+        List<TokenError> newErrors = new ArrayList<>();
+        int oldIndex = keep;
+        int oldSize = this.tokens.size();
+        while (true)
+        {
+            handler.clear();
+            Token.Kind kind = scanner.scanInto(relexed);
+            int last = relexed.size() - 1;
+            if (kind == Token.Kind.EOF)
+            {
+                oldIndex = oldSize;
+                this.eofOffset = (int) scanner.getTokenStart();
+                break;
+            }
+
+            int start = relexed.getStart(last);
+            if (start >= newDamageEnd)
+            {
+                while (oldIndex < oldSize && this.tokens.getStart(oldIndex) + delta < start)
+                    oldIndex++;
+                if (oldIndex < oldSize && this.tokens.getStart(oldIndex) + delta == start
+                        && this.tokens.getStart(oldIndex) >= oldDamageEnd)
+                {
+                    //converged: the old token and everything after it are still right
+                    relexed.truncate(last);
+                    this.eofOffset += delta;
+                    break;
+                }
+            }
+
+            for (Error error : handler.getErrorList())
+                newErrors.add(new TokenError(keep + last, error));
+        }
+
+        this.tokens.splice(keep, oldIndex, relexed, delta, lineDelta);
+        this.spliceErrors(keep, oldIndex, newErrors, relexed.size(), lineDelta);
+        this.relexedFrom = keep;
+        this.relexedTo = keep + relexed.size();
+
+        //the lines up to where the kept tokens start get their states from the new tokens
+        int convergedOffset = this.relexedTo < this.tokens.size() ?
+                this.tokens.getStart(this.relexedTo) : this.text.length();
+        this.updateLineStates(resumeLine, convergedOffset);
+    }
+
+    /**
+     * Returns the tokens of the text, which stay up to date as the text is edited
+     */
+    public TokenBuffer getTokens()
+    {
+        return this.tokens;
+    }
+
+    /**
+     * Returns the current text
+     */
+    public CharSequence getText()
+    {
+        return this.text;
+    }
+
+    /**
+     * Returns the errors found in the current text, in order
+     */
+    public List<Error> getErrorList()
+    {
+        List<Error> errorList = new ArrayList<>(this.errors.size());
+        for (TokenError error : this.errors)
+            errorList.add(error.error);
+        return errorList;
+    }
+
+    /**
+     * Returns the number of lines in the text
+     */
+    public int getLineCount()
+    {
+        return this.lines.getLineCount();
+    }
+
+    /**
+     * Returns the line starts of the text, which stay up to date as the text is edited
+     */
+    public LineIndex getLineIndex()
+    {
+        return this.lines;
+    }
+
+    /**
+     * Returns the state the lexer is in at the start of the given line
+     *
+     * @param line the index of the line, starting from 0
+     * @return the state at the start of the line
+     */
+    public LineState getLineState(int line)
+    {
+        if (line < 0 || line >= this.lines.getLineCount())
+            throw new IndexOutOfBoundsException("Line " + line + " out of range 0.." + this.lines.getLineCount());
+        return LINE_STATES[this.lineStates[line]];
+    }
+
+    /**
+     * Returns the index of the first token re-scanned by the last edit
+     */
+    public int getRelexedFrom()
+    {
+        return this.relexedFrom;
+    }
+
+    /**
+     * Returns the index just past the last token re-scanned by the last edit
+     */
+    public int getRelexedTo()
+    {
+        return this.relexedTo;
+    }
+
+    /**
+     * Brings the line starts and states up to date after an edit; the lines
+     * whose starts were found again start out in the normal state. The states
+     * are moved in place, and only when the number of lines changes.
+     *
+     * @param offset            the offset of the edit
+     * @param removedLength     the number of chars removed
+     * @param insertedLength    the number of chars inserted
+     * @param lastUndamagedLine the line holding the char before the edit
+     * @return the change in the number of lines
+     */
+    private int updateLines(int offset, int removedLength, int insertedLength, int lastUndamagedLine)
+    {
+        int oldCount = this.lines.getLineCount();
+        int replaced = this.lines.edit(this.text, offset, removedLength, insertedLength);
+        int newCount = this.lines.getLineCount();
+
+        int tail = lastUndamagedLine + 1 + replaced;
+        int tailLength = oldCount - tail;
+        int newTail = newCount - tailLength;
+        if (newCount > this.lineStates.length)
+            this.lineStates = Arrays.copyOf(this.lineStates, Math.max(newCount, this.lineStates.length * 2));
+        if (newTail != tail)
+            System.arraycopy(this.lineStates, tail, this.lineStates, newTail, tailLength);
+        Arrays.fill(this.lineStates, lastUndamagedLine + 1, newTail, (byte) LineState.NORMAL.ordinal());
+        return newCount - oldCount;
+    }
+
+    /**
+     * Recomputes the states of the lines after the given line that start
+     * at or before the given offset, from the tokens spanning their starts
+     *
+     * @param fromLine the line scanning resumed at
+     * @param toOffset the offset where the kept tokens start
+     */
+    private void updateLineStates(int fromLine, int toOffset)
+    {
+        int line = fromLine + 1;
+        int index = this.relexedFrom;
+        while (line < this.lines.getLineCount() && this.lines.getLineStart(line) <= toOffset)
+        {
+            int lineStart = this.lines.getLineStart(line);
+            while (index < this.relexedTo && this.tokens.getEnd(index) <= lineStart)
+                index++;
+
+            LineState state = LineState.NORMAL;
+            if (index < this.relexedTo && this.tokens.getStart(index) < lineStart)
+                state = this.text.charAt(this.tokens.getStart(index)) == '"' ?
+                        LineState.IN_STRING : LineState.IN_COMMENT;
+            this.lineStates[line] = (byte) state.ordinal();
+            line++;
+        }
+    }
+
+    /**
+     * Replaces the errors of the re-scanned tokens with the new ones and
+     * moves the errors of the kept tokens after them; the errors before
+     * them are not touched
+     *
+     * @param from          the index of the first replaced token
+     * @param to            the index just past the last replaced token
+     * @param newErrors     the errors of the new tokens
+     * @param newTokenCount the number of new tokens
+     * @param lineDelta     the change in the number of lines
+     */
+    private void spliceErrors(int from, int to, List<TokenError> newErrors, int newTokenCount, int lineDelta)
+    {
+        int first = this.findError(from);
+        int kept = this.findError(to);
+
+        int tokenDelta = from + newTokenCount - to;
+        if (tokenDelta != 0 || lineDelta != 0)
+        {
+            for (int i = kept; i < this.errors.size(); i++)
+            {
+                TokenError error = this.errors.get(i);
+                Error moved = error.error;
+                if (lineDelta != 0)
+                    moved = new Error(moved.getKind(), moved.getFilename(),
+                                      moved.getLineNum() + lineDelta, moved.getMessage());
+                this.errors.set(i, new TokenError(error.token + tokenDelta, moved));
+            }
+        }
+
+        List<TokenError> replaced = this.errors.subList(first, kept);
+        replaced.clear();
+        replaced.addAll(newErrors);
+    }
+
+    /**
+     * Returns the index of the first error found in the given token or a
+     * later one, or the number of errors if there is none
+     *
+     * @param token the index of a token
+     * @return the index of the error
+     */
+    private int findError(int token)
+    {
+        int low = 0;
+        int high = this.errors.size();
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (this.errors.get(middle).token < token)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * An error together with the index of the token it was found in
+     */
+    private static class TokenError
+    {
+        private final int token;
+        private final Error error;
+
+        private TokenError(int token, Error error)
+        {
+            this.token = token;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,533 @@
+/*
+ * File: LexerBenchmark.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the LexerBenchmark class, which measures the throughput
+ * and allocation rate of the pieces of the Bantam lexer.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import proj9AbulhabFengMaoSavillo.bantam.util.CompilationException;
+import proj9AbulhabFengMaoSavillo.bantam.util.ErrorHandler;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The LexerBenchmark class times the lexer over the files given on the
+ * command line and prints the throughput and allocation rate of each variant.
+ * Run with -suite instead of filenames, it times SourceFile.getNextChar(),
+ * Scanner.scan() and Token construction over corpora of 10 KB, 1 MB and
+ * 100 MB, made by repeating the sample programs in include/ and written by
+ * a CorpusGenerator, or made by repeating the files given after -suite.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class LexerBenchmark
+{
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    // a mix of identifiers and special words, as they appear in Bantam programs
+    private static final String[] IDENTIFIERS = {"main", "i", "j", "while", "dream", "k", "if",
+            "var", "String", "System", "out", "println", "args", "return", "true", "else", "x1",
+            "new", "cast", "instanceof", "false", "count", "class", "extends", "Dream", "break"};
+    private static final int IDENTIFIER_ROUNDS = 200000;
+
+    // the sizes of the corpora the suite runs over, what it seeds them with by default,
+    // and the seed of the generated ones
+    private static final long[] CORPUS_SIZES = {10L << 10, 1L << 20, 100L << 20};
+    private static final String[] DEFAULT_SEEDS = {"include/Jaemin.java", "include/Doyoung.java",
+            "include/Winwin.java"};
+    private static final long CORPUS_SEED = 361;
+    private static final int TOKEN_ROUNDS = 100;
+
+    // measures the bytes allocated by the benchmarking thread, if the JVM can
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    // how Token classified identifiers before the perfect hash
+    private static final Set<String> LEGACY_RESERVED_WORDS = new HashSet<>(Arrays.asList(
+            "break", "cast", "class", "var", "else", "extends", "for", "if", "instanceof",
+            "new", "return", "while"));
+
+    /**
+     * Runs the benchmarks over each file given as a command-line argument,
+     * or the suite if the first argument is -suite.
+     */
+    public static void main(String[] args)
+    {
+        //make sure at least one filename was given
+        if (args.length < 1)
+        {
+            System.err.println("Missing input filename");
+            System.exit(-1);
+        }
+
+        if (args[0].equals("-suite"))
+        {
+            if (args.length > 1)
+                runSuite(Arrays.copyOfRange(args, 1, args.length), false);
+            else
+                runSuite(DEFAULT_SEEDS, true);
+            return;
+        }
+
+        benchmarkIdentifierKinds();
+
+        for (String filename : args)
+        {
+            long bytes = new File(filename).length();
+            System.out.println(String.format("Benchmarking file: %s (%d bytes)", filename, bytes));
+
+            report("per-char Reader.read()", bytes, () -> readUnbuffered(filename));
+            for (SourceFile.Backend backend : SourceFile.Backend.values())
+            {
+                report("SourceFile " + backend, bytes,
+                       () -> drain(new SourceFile(filename, backend)));
+            }
+            report("SourceFile (chosen by size: " + SourceFile.Backend.forSize(bytes) + ")", bytes,
+                   () -> drain(new SourceFile(filename)));
+            for (Scanner.Engine engine : Scanner.Engine.values())
+            {
+                report("Scanner " + engine, bytes, () -> scanAll(filename, engine, Scanner.Mode.FULL));
+            }
+            for (Scanner.Mode mode : Scanner.Mode.values())
+            {
+                report("Scanner.scan() " + mode, bytes, () -> scanAll(filename, Scanner.Engine.SWITCH, mode));
+            }
+            report("Scanner.scanKind() (spans only)", bytes,
+                   () -> countKinds(new Scanner(filename, new ErrorHandler())));
+            report("Scanner.scanToBuffer()", bytes,
+                   () -> new Scanner(filename, new ErrorHandler()).scanToBuffer().size());
+            report("Scanner.scanToRing() + consumer thread", bytes, () -> scanThroughRing(filename));
+            report("Scanner.scanToStore() (off-heap)", bytes, () -> scanToStore(filename));
+            report("ParallelScanner (" + Runtime.getRuntime().availableProcessors() + " threads)", bytes,
+                   () -> new ParallelScanner().scan(filename, new ErrorHandler()).size());
+
+            System.out.println("-----------------------------------------------");
+        }
+    }
+
+    /**
+     * Runs the suite: for each corpus size, makes a corpus from the seed
+     * files, and if asked a generated one too, and times reading, scanning
+     * and building tokens over each
+     *
+     * @param seeds     the files whose contents are repeated to make the corpora
+     * @param generated whether to time a corpus from a CorpusGenerator as well
+     */
+    private static void runSuite(String[] seeds, boolean generated)
+    {
+        for (long size : CORPUS_SIZES)
+        {
+            benchmarkCorpus("repeated " + String.join(", ", seeds), writeCorpus(seeds, size));
+            if (generated)
+                benchmarkCorpus("CorpusGenerator, seed " + CORPUS_SEED, writeGeneratedCorpus(size));
+        }
+    }
+
+    /**
+     * Times reading, scanning and building tokens over a corpus, then
+     * deletes it
+     *
+     * @param name   what the corpus was made from
+     * @param corpus the path of the corpus
+     */
+    private static void benchmarkCorpus(String name, Path corpus)
+    {
+        String filename = corpus.toString();
+        long bytes = corpus.toFile().length();
+        System.out.println(String.format("Corpus of %d bytes (%s)", bytes, name));
+
+        report("SourceFile.getNextChar()", bytes, () -> drain(new SourceFile(filename)));
+        report("Scanner.scanKind() (no Token objects)", bytes,
+               () -> countKinds(new Scanner(filename, new ErrorHandler())));
+        for (Scanner.Engine engine : Scanner.Engine.values())
+        {
+            report("Scanner.scan() " + engine, bytes, () -> scanAll(filename, engine, Scanner.Mode.FULL));
+        }
+        for (Scanner.Mode mode : Scanner.Mode.values())
+        {
+            report("Scanner.scan() " + mode, bytes, () -> scanAll(filename, Scanner.Engine.SWITCH, mode));
+        }
+        benchmarkTokenConstruction(filename);
+
+        System.out.println("-----------------------------------------------");
+        corpus.toFile().delete();
+    }
+
+    /**
+     * Writes a temporary corpus made of the seed files repeated as many times
+     * as fit in the given size, and at least once
+     *
+     * @param seeds the files to repeat
+     * @param size  the number of bytes the corpus should have at most
+     * @return the path of the corpus, which is deleted when the JVM exits
+     */
+    private static Path writeCorpus(String[] seeds, long size)
+    {
+        try
+        {
+            StringBuilder seedText = new StringBuilder();
+            for (String seed : seeds)
+                seedText.append(new String(Files.readAllBytes(Paths.get(seed)))).append('\n');
+
+            Path corpus = Files.createTempFile("bantam-corpus-", ".btm");
+            corpus.toFile().deleteOnExit();
+            try (Writer writer = Files.newBufferedWriter(corpus))
+            {
+                long written = 0;
+                do
+                {
+                    writer.append(seedText);
+                    written += seedText.length();
+                } while (written + seedText.length() <= size);
+            }
+            return corpus;
+        }
+        catch (IOException e)
+        {
+            throw new CompilationException("Corpus could not be written: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a temporary corpus of the given size, or a few more bytes, from
+     * a CorpusGenerator
+     *
+     * @param size the number of bytes the corpus should have
+     * @return the path of the corpus, which is deleted when the JVM exits
+     */
+    private static Path writeGeneratedCorpus(long size)
+    {
+        try
+        {
+            Path corpus = Files.createTempFile("bantam-corpus-", ".btm");
+            corpus.toFile().deleteOnExit();
+            try (Writer writer = Files.newBufferedWriter(corpus))
+            {
+                new CorpusGenerator(CORPUS_SEED).generate(writer, size);
+            }
+            return corpus;
+        }
+        catch (IOException e)
+        {
+            throw new CompilationException("Corpus could not be written: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Times building a Token for each token of the given file. The kinds,
+     * spellings and positions are collected first, from at most the first
+     * 128K tokens, so only the constructor is timed. The tokens are kept in
+     * an array so the JIT cannot optimize their allocation away.
+     */
+    private static void benchmarkTokenConstruction(String filename)
+    {
+        List<Token> samples = new ArrayList<>();
+        Scanner scanner = new Scanner(filename, new ErrorHandler());
+        for (Token token = scanner.scan(); token.kind != Token.Kind.EOF && samples.size() < (1 << 17);
+             token = scanner.scan())
+            samples.add(token);
+        Token[] tokens = samples.toArray(new Token[0]);
+        Token[] built = new Token[tokens.length];
+
+        reportPerOperation("new Token()", (long) TOKEN_ROUNDS * tokens.length, () ->
+        {
+            long checksum = 0;
+            for (int round = 0; round < TOKEN_ROUNDS; round++)
+                for (int i = 0; i < tokens.length; i++)
+                {
+                    Token token = tokens[i];
+                    built[i] = new Token(token.kind, token.spelling, token.position,
+                                         token.getStartOffset(), token.getEndOffset(),
+                                         token.getLine(), token.getColumn(), token.getSymbol());
+                    checksum += built[i].kind.ordinal();
+                }
+            return checksum;
+        });
+    }
+
+    /**
+     * Times the given task and prints its best throughput in MB/s, and how
+     * fast it allocates memory
+     *
+     * @param name  name of the variant being timed
+     * @param bytes number of bytes processed by one run of the task
+     * @param task  the task to time; returns a checksum so the work is not optimized away
+     */
+    private static void report(String name, long bytes, LongTask task)
+    {
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+            checksum += task.run();
+
+        long best = Long.MAX_VALUE;
+        long allocated = 0;
+        long elapsed = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++)
+        {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            checksum += task.run();
+            long time = System.nanoTime() - start;
+            allocated += allocatedBytes() - allocatedBefore;
+            elapsed += time;
+            best = Math.min(best, time);
+        }
+
+        double seconds = best / 1e9;
+        System.out.println(String.format("  %-45s %10.3f ms %10.1f MB/s %s  (checksum %d)",
+                                         name, best / 1e6, bytes / 1e6 / seconds,
+                                         formatAllocation(allocated, elapsed, MEASURED_ROUNDS * bytes, "B"),
+                                         checksum));
+    }
+
+    /**
+     * Returns the number of bytes the current thread has allocated so far,
+     * or -1 if the JVM does not count them
+     */
+    private static long allocatedBytes()
+    {
+        if (THREADS instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        return -1;
+    }
+
+    /**
+     * Formats the allocation rate of a benchmark, in MB/s and bytes per unit of work
+     *
+     * @param allocated the bytes allocated over the measured rounds
+     * @param elapsed   the nanoseconds taken by the measured rounds
+     * @param units     the units of work done by the measured rounds
+     * @param unit      the name of the unit of work
+     * @return the formatted allocation rate
+     */
+    private static String formatAllocation(long allocated, long elapsed, long units, String unit)
+    {
+        if (allocatedBytes() < 0)
+            return "(allocation not measured)";
+        return String.format("%8.1f MB/s alloc %8.3f B/%s",
+                             allocated / 1e6 / (elapsed / 1e9), (double) allocated / units, unit);
+    }
+
+    /**
+     * Times classifying identifiers as identifiers, booleans or reserved words,
+     * starting from the chars the scanner has collected, the old way and the new way
+     */
+    private static void benchmarkIdentifierKinds()
+    {
+        StringBuilder[] spellings = new StringBuilder[IDENTIFIERS.length];
+        for (int i = 0; i < IDENTIFIERS.length; i++)
+            spellings[i] = new StringBuilder(IDENTIFIERS[i]);
+        long count = (long) IDENTIFIER_ROUNDS * spellings.length;
+
+        System.out.println("Identifier classification:");
+        reportPerOperation("HashSet + toUpperCase() + Enum.valueOf()", count, () ->
+        {
+            long checksum = 0;
+            for (int round = 0; round < IDENTIFIER_ROUNDS; round++)
+                for (StringBuilder spelling : spellings)
+                    checksum += legacyIdentifierKind(spelling.toString()).ordinal();
+            return checksum;
+        });
+        reportPerOperation("ScanTables.identifierKind() perfect hash", count, () ->
+        {
+            long checksum = 0;
+            for (int round = 0; round < IDENTIFIER_ROUNDS; round++)
+                for (StringBuilder spelling : spellings)
+                    checksum += ScanTables.identifierKind(spelling).ordinal();
+            return checksum;
+        });
+        SymbolTable symbolTable = new SymbolTable();
+        reportPerOperation("SymbolTable.intern()", count, () ->
+        {
+            long checksum = 0;
+            for (int round = 0; round < IDENTIFIER_ROUNDS; round++)
+                for (StringBuilder spelling : spellings)
+                    checksum += symbolTable.intern(spelling);
+            return checksum;
+        });
+        System.out.println("-----------------------------------------------");
+    }
+
+    /**
+     * Classifies an identifier the way Token did before ScanTables.identifierKind()
+     */
+    private static Token.Kind legacyIdentifierKind(String spelling)
+    {
+        if (spelling.equals("true") || spelling.equals("false"))
+            return Token.Kind.BOOLEAN;
+        else if (LEGACY_RESERVED_WORDS.contains(spelling))
+            return Enum.valueOf(Token.Kind.class, spelling.toUpperCase());
+        else
+            return Token.Kind.IDENTIFIER;
+    }
+
+    /**
+     * Times the given task and prints its best time per operation
+     *
+     * @param name       name of the variant being timed
+     * @param operations number of operations done by one run of the task
+     * @param task       the task to time; returns a checksum so the work is not optimized away
+     */
+    private static void reportPerOperation(String name, long operations, LongTask task)
+    {
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+            checksum += task.run();
+
+        long best = Long.MAX_VALUE;
+        long allocated = 0;
+        long elapsed = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++)
+        {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            checksum += task.run();
+            long time = System.nanoTime() - start;
+            allocated += allocatedBytes() - allocatedBefore;
+            elapsed += time;
+            best = Math.min(best, time);
+        }
+
+        System.out.println(String.format("  %-45s %10.2f ns/op %s  (checksum %d)",
+                                         name, (double) best / operations,
+                                         formatAllocation(allocated, elapsed, MEASURED_ROUNDS * operations, "op"),
+                                         checksum));
+    }
+
+    /**
+     * Reads every char of the given source, the way the Scanner does
+     *
+     * @return the final line number, as a checksum
+     */
+    private static long drain(SourceFile sourceFile)
+    {
+        while (sourceFile.getNextChar() != SourceFile.eof) { }
+        return sourceFile.getCurrentLineNumber();
+    }
+
+    /**
+     * Scans every token of the given file with the given engine and mode
+     *
+     * @return the number of tokens, as a checksum
+     */
+    private static long scanAll(String filename, Scanner.Engine engine, Scanner.Mode mode)
+    {
+        Scanner scanner = new Scanner(filename, new ErrorHandler());
+        scanner.setEngine(engine);
+        scanner.setMode(mode);
+        long count = 0;
+        while (scanner.scan().kind != Token.Kind.EOF)
+            count++;
+        return count;
+    }
+
+    /**
+     * Recognizes every token of the given scanner without building Tokens
+     *
+     * @return the number of tokens, as a checksum
+     */
+    private static long countKinds(Scanner scanner)
+    {
+        long count = 0;
+        while (scanner.scanKind() != Token.Kind.EOF)
+            count++;
+        return count;
+    }
+
+    /**
+     * Scans the file into an OffHeapTokenStore and frees it again
+     *
+     * @return the number of tokens, as a checksum
+     */
+    private static long scanToStore(String filename)
+    {
+        try (OffHeapTokenStore store = new OffHeapTokenStore())
+        {
+            new Scanner(filename, new ErrorHandler()).scanToStore(store);
+            return store.size();
+        }
+    }
+
+    /**
+     * Scans the file into a TokenRing on a new thread while this thread
+     * drains it, summing the lengths of the tokens
+     *
+     * @return the sum of the token lengths, as a checksum
+     */
+    private static long scanThroughRing(String filename)
+    {
+        TokenRing ring = new TokenRing();
+        Thread producer = new Thread(() -> new Scanner(filename, new ErrorHandler()).scanToRing(ring));
+        producer.start();
+
+        long[] checksum = {0};
+        TokenRing.Handler handler = (kind, start, end, line) -> checksum[0] += end - start;
+        while (ring.drain(handler) >= 0) { }
+        try
+        {
+            producer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        return checksum[0];
+    }
+
+    /**
+     * Reads the file one Reader.read() call at a time with the same
+     * line counting as SourceFile, as SourceFile used to.
+     *
+     * @return the final line number, as a checksum
+     */
+    private static long readUnbuffered(String filename)
+    {
+        try (Reader reader = new FileReader(filename))
+        {
+            int lineNumber = 1;
+            int prevChar = -1;
+            int c;
+            while ((c = reader.read()) != -1)
+            {
+                if (c == '\r' || (c == '\n' && prevChar != '\r'))
+                    lineNumber++;
+                prevChar = c;
+            }
+            return lineNumber;
+        }
+        catch (IOException e)
+        {
+            throw new CompilationException("File " + filename + " could not be read.");
+        }
+    }
+
+    /**
+     * A unit of benchmarked work
+     */
+    private interface LongTask
+    {
+        long run();
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ * File: LexerChecks.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the LexerChecks class, which checks edge cases of the
+ * lexer that the sample files do not reach.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import proj9AbulhabFengMaoSavillo.bantam.util.CompilationException;
+import proj9AbulhabFengMaoSavillo.bantam.util.ErrorHandler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Stream;
+
+/**
+ * The LexerChecks class runs checks of the lexer's behavior on inputs that
+ * are too large or too odd to keep as sample files, and prints each one that
+ * fails. Run from the command line with no arguments; it exits with status 1
+ * if any check fails.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class LexerChecks
+{
+    // the fragments random edits insert, eof chars among them
+    private static final String[] EDIT_FRAGMENTS = {"\0", "a\0b", "\"\0", "/*\0", "/*", "*/", "\"", "\n",
+            "\r\n", "x", "12", " ", "//", "if", "=", "\\", "abc def\n"};
+
+    // the fragments fuzzed text is made of: line breaks, eof chars, non-ASCII
+    // digits and letters, and the starts and ends of every kind of token
+    private static final String[] FUZZ_FRAGMENTS = {"\r", "\n", "\r\n", "\0", "\u0663", "\uFF11", "\u00e9",
+            "7", "2147483648", "x", "_a", "if", "true", "\"", "\\", "\\q", "/*", "*/", "//", "/", "*", "&",
+            "&&", "|", "||", "+", "++", "-", "--", "=", "==", "!", "!=", "<", "<=", ".", ":", ";", ",", "(", ")",
+            "[", "]", "{", "}", "#", " ", "\t", "\f"};
+
+    // the fragments of text whose chunk starts mostly fall inside comments and strings
+    private static final String[] SPANNING_FRAGMENTS = {"/*", "*/", "/* a\nb\n*/", "\"", "\"s\n", "\\\"",
+            "//", "\n", "\n", "\n", "\r\n", "\r", "\0", "x = 1;", " ", "#", "\\q", "*", "/"};
+
+    private static int checkCount;
+    private static int failureCount;
+
+    /**
+     * Runs every check and prints how many failed
+     */
+    public static void main(String[] args)
+    {
+        checkBackendFallback();
+        checkOffsetsPast2G();
+        checkRingFailure();
+        checkRingPast2G();
+        checkIncrementalEofChars();
+        checkCancelInsideComment();
+        checkBufferSymbols();
+        checkEnginesAgree();
+        checkParallelStitching();
+
+        System.out.println(String.format("%d checks, %d failed", checkCount, failureCount));
+        if (failureCount > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Checks that files too large for one array or mapping are read through a
+     * Reader, whichever backend was asked for, and that others keep theirs
+     */
+    private static void checkBackendFallback()
+    {
+        long tooLarge = SourceFile.MAX_BUFFER_BYTES + 1;
+        check(SourceFile.Backend.forSize(tooLarge) == SourceFile.Backend.READER,
+              "a file over 2G bytes is read through a Reader by default");
+        check(SourceFile.Backend.forSize(5L << 30) == SourceFile.Backend.READER,
+              "a 5G file is read through a Reader by default");
+        for (SourceFile.Backend backend : SourceFile.Backend.values())
+        {
+            check(backend.forFileOf(tooLarge) == SourceFile.Backend.READER,
+                  backend + " falls back to READER for a file over 2G bytes");
+            check(backend.forFileOf(SourceFile.MAX_BUFFER_BYTES) == backend,
+                  backend + " is kept for a file of exactly 2G bytes");
+        }
+        check(SourceFile.Backend.forSize(SourceFile.MAX_BUFFER_BYTES) == SourceFile.Backend.MAPPED,
+              "a file of exactly 2G bytes is mapped by default");
+        check(SourceFile.Backend.forSize(1024) == SourceFile.Backend.WHOLE,
+              "a small file is read whole by default");
+    }
+
+    /**
+     * Checks that a source read through a Reader can be scanned into Tokens
+     * past 2G chars, and that a TokenBuffer, which cannot hold such offsets,
+     * reports them as a CompilationException
+     */
+    private static void checkOffsetsPast2G()
+    {
+        long blankLength = Integer.MAX_VALUE + 16L;
+        Scanner scanner = new Scanner(new FillReader("", ' ', blankLength, "x;"), new ErrorHandler());
+        Token token = scanner.scan();
+        check(token.kind == Token.Kind.IDENTIFIER && token.getStartOffset() == blankLength &&
+                      token.getEndOffset() == blankLength + 1,
+              "an identifier after 2G blanks has its offsets, not " + token.getStartOffset() +
+                      ".." + token.getEndOffset());
+
+        TokenBuffer tokens = new TokenBuffer("");
+        boolean reported = false;
+        try
+        {
+            tokens.add(Token.Kind.IDENTIFIER, blankLength, blankLength + 1, 1, 0);
+        }
+        catch (CompilationException e)
+        {
+            reported = true;
+        }
+        check(reported, "a TokenBuffer reports offsets past 2G chars as a CompilationException");
+    }
+
+    /**
+     * Checks that an Error stopping the producer of a TokenRing is thrown to
+     * the consumer instead of leaving it waiting
+     */
+    private static void checkRingFailure()
+    {
+        TokenRing ring = new TokenRing();
+        Reader failing = new FillReader("", ' ', 1 << 20, "")
+        {
+            @Override
+            public int read(char[] chars, int offset, int length)
+            {
+                throw new AssertionError("reading failed");
+            }
+        };
+        Thread producer = new Thread(() -> new Scanner(failing, new ErrorHandler()).scanToRing(ring));
+        producer.setUncaughtExceptionHandler((thread, e) -> { });
+        producer.start();
+
+        Throwable thrown = null;
+        try
+        {
+            while (ring.drain((kind, start, end, line) -> { }) >= 0) { }
+        }
+        catch (AssertionError e)
+        {
+            thrown = e;
+        }
+        check(thrown != null && "reading failed".equals(thrown.getMessage()),
+              "an Error on the producer thread is thrown by drain()");
+    }
+
+    /**
+     * Checks that a source read through a Reader can be scanned through a
+     * TokenRing past 2G chars, which holds only the tokens in flight and
+     * not the text, and that the offsets reach the consumer whole
+     */
+    private static void checkRingPast2G()
+    {
+        long blankLength = Integer.MAX_VALUE + 16L;
+        TokenRing ring = new TokenRing();
+        Reader reader = new FillReader("", ' ', blankLength, "x;");
+        Thread producer = new Thread(() -> new Scanner(reader, new ErrorHandler()).scanToRing(ring));
+        producer.setUncaughtExceptionHandler((thread, e) -> { });
+        producer.start();
+
+        long[] identifierStart = {-1};
+        Throwable thrown = null;
+        try
+        {
+            while (ring.drain((kind, start, end, line) ->
+                              {
+                                  if (kind == Token.Kind.IDENTIFIER)
+                                      identifierStart[0] = start;
+                              }) >= 0) { }
+        }
+        catch (RuntimeException | Error e)
+        {
+            thrown = e;
+        }
+        check(thrown == null && identifierStart[0] == blankLength && ring.getText() == null,
+              "an identifier after 2G blanks comes through a ring at " + identifierStart[0] + ", failure " +
+                      thrown);
+    }
+
+    /**
+     * Checks that an IncrementalScanner, after edits that insert and remove
+     * eof chars, has the tokens and errors of a full scan of the same text
+     */
+    private static void checkIncrementalEofChars()
+    {
+        Random random = new Random(42);
+        String mismatch = null;
+        String start = "class A {\n  var x = \"s\"; /* c */\n  // d\n  x = 12 + y;\n}\n";
+        for (int run = 0; run < 20 && mismatch == null; run++)
+        {
+            IncrementalScanner scanner = new IncrementalScanner("f", start);
+            StringBuilder text = new StringBuilder(start);
+            for (int edit = 0; edit < 200 && mismatch == null; edit++)
+            {
+                int offset = random.nextInt(text.length() + 1);
+                int removed = random.nextInt(4) == 0 ? Math.min(random.nextInt(8), text.length() - offset) : 0;
+                StringBuilder inserted = new StringBuilder();
+                for (int i = random.nextInt(3); i > 0; i--)
+                    inserted.append(EDIT_FRAGMENTS[random.nextInt(EDIT_FRAGMENTS.length)]);
+                scanner.edit(offset, removed, inserted);
+                text.replace(offset, offset + removed, inserted.toString());
+
+                ErrorHandler handler = new ErrorHandler();
+                TokenBuffer expected = new Scanner(text, "f", handler).scanToBuffer();
+                if (!describe(expected).equals(describe(scanner.getTokens())))
+                    mismatch = "tokens differ at run " + run + ", edit " + edit;
+                else if (!handler.getErrorList().toString().equals(scanner.getErrorList().toString()))
+                    mismatch = "errors differ at run " + run + ", edit " + edit;
+            }
+        }
+        check(mismatch == null, "an incremental scan matches a full scan after eof char edits: " + mismatch);
+    }
+
+    /**
+     * Checks that a scan is cancelled inside a huge unterminated comment,
+     * long before the comment ends
+     */
+    private static void checkCancelInsideComment()
+    {
+        for (String opening : new String[] {"/*", "//"})
+        {
+            Scanner scanner = new Scanner(new FillReader(opening, 'x', 1L << 30, ""), new ErrorHandler());
+            CancellationToken cancellationToken = new CancellationToken();
+            long[] scanned = {0};
+            scanner.setCancellationToken(cancellationToken);
+            scanner.setProgressListener((consumed, total) ->
+                                        {
+                                            scanned[0] = consumed;
+                                            cancellationToken.cancel();
+                                        });
+            boolean cancelled = false;
+            try
+            {
+                scanner.scan();
+            }
+            catch (CancellationException e)
+            {
+                cancelled = true;
+            }
+            check(cancelled && scanned[0] < 1 << 20,
+                  "a scan is cancelled within a 1G char " + opening + " comment, not after " + scanned[0] + " chars");
+        }
+    }
+
+    /**
+     * Checks that the Tokens a TokenBuffer builds carry the symbol ids
+     * Scanner.scan() gives, whether the buffer was scanned whole, taken from
+     * a TokenCache or scanned in parallel
+     */
+    private static void checkBufferSymbols()
+    {
+        String text = new CorpusGenerator(7).generate(64 << 10);
+        List<String> expected = new ArrayList<>();
+        Scanner scanner = new Scanner(text, "f", new ErrorHandler());
+        for (Token token = scanner.scan(); token.kind != Token.Kind.EOF; token = scanner.scan())
+            expected.add(token.kind + " " + token.spelling + " " + token.getSymbol());
+
+        check(expected.equals(describeSymbols(new Scanner(text, "f", new ErrorHandler()).scanToBuffer())),
+              "the Tokens of scanToBuffer() carry the symbol ids of scan()");
+        check(expected.equals(describeSymbols(new ParallelScanner(4, 4096).scan(text, "f", new ErrorHandler()))),
+              "the Tokens of a ParallelScanner carry the symbol ids of scan()");
+        try
+        {
+            Path directory = Files.createTempDirectory("bantam-checks-");
+            TokenCache cache = new TokenCache(directory, TokenCache.DEFAULT_MAX_BYTES);
+            check(expected.equals(describeSymbols(cache.scan(text, "f", new ErrorHandler()))),
+                  "the Tokens of a TokenCache miss carry the symbol ids of scan()");
+            check(expected.equals(describeSymbols(cache.scan(text, "f", new ErrorHandler()))) &&
+                          cache.getHitCount() == 1,
+                  "the Tokens of a TokenCache hit carry the symbol ids of scan()");
+            try (Stream<Path> entries = Files.list(directory))
+            {
+                for (Path entry : (Iterable<Path>) entries::iterator)
+                    Files.delete(entry);
+            }
+            Files.delete(directory);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checks that the SWITCH and TABLE engines give the same tokens and
+     * errors, over generated programs and over fuzzed text full of line
+     * breaks, eof chars and non-ASCII digits
+     */
+    private static void checkEnginesAgree()
+    {
+        List<String> texts = new ArrayList<>();
+        for (int seed = 0; seed < 4; seed++)
+            texts.add(new CorpusGenerator(seed, 0.05).generate(32 << 10));
+        Random random = new Random(2);
+        for (int i = 0; i < 500; i++)
+        {
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(60); j > 0; j--)
+                text.append(FUZZ_FRAGMENTS[random.nextInt(FUZZ_FRAGMENTS.length)]);
+            texts.add(text.toString());
+        }
+
+        String mismatch = null;
+        for (int i = 0; i < texts.size() && mismatch == null; i++)
+        {
+            if (!scanWith(texts.get(i), Scanner.Engine.SWITCH).equals(scanWith(texts.get(i), Scanner.Engine.TABLE)))
+                mismatch = "text " + i + ": " + texts.get(i);
+        }
+        check(mismatch == null, "the SWITCH and TABLE engines give the same tokens and errors, not for " + mismatch);
+    }
+
+    /**
+     * Checks that a ParallelScanner cut into many small chunks gives the
+     * tokens and errors of a sequential scan, over text whose chunk starts
+     * mostly fall inside block comments and strings, so that the chunks
+     * have to be stitched back together
+     */
+    private static void checkParallelStitching()
+    {
+        Random random = new Random(20);
+        String mismatch = null;
+        long relexed = 0;
+        for (int run = 0; run < 400 && mismatch == null; run++)
+        {
+            String text;
+            if (run % 20 == 0)
+            {
+                text = new CorpusGenerator(run, 0.1).generate(16 << 10);
+            }
+            else
+            {
+                StringBuilder builder = new StringBuilder();
+                for (int i = 50 + random.nextInt(400); i > 0; i--)
+                    builder.append(SPANNING_FRAGMENTS[random.nextInt(SPANNING_FRAGMENTS.length)]);
+                text = builder.toString();
+            }
+            int parallelism = 2 + random.nextInt(7);
+            int minChunkLength = 1 << random.nextInt(8);
+
+            ErrorHandler expectedHandler = new ErrorHandler();
+            TokenBuffer expected = new Scanner(text, "f", expectedHandler).scanToBuffer();
+            ErrorHandler handler = new ErrorHandler();
+            ParallelScanner scanner = new ParallelScanner(parallelism, minChunkLength);
+            TokenBuffer tokens = scanner.scan(text, "f", handler);
+            relexed += scanner.getRelexedCount();
+
+            if (!describe(expected).equals(describe(tokens)))
+                mismatch = "tokens differ at run " + run;
+            else if (!expectedHandler.getErrorList().toString().equals(handler.getErrorList().toString()))
+                mismatch = "errors differ at run " + run;
+        }
+        check(mismatch == null, "a ParallelScanner with small chunks matches a sequential scan: " + mismatch);
+        check(relexed > 0, "some chunk of the parallel scans started inside a token and was stitched");
+    }
+
+    /**
+     * Scans a text with the given engine and returns every token, with its
+     * spelling, lines and offsets, followed by the errors found
+     */
+    private static List<String> scanWith(String text, Scanner.Engine engine)
+    {
+        ErrorHandler handler = new ErrorHandler();
+        Scanner scanner = new Scanner(text, "f", handler);
+        scanner.setEngine(engine);
+        List<String> descriptions = new ArrayList<>();
+        Token token;
+        do
+        {
+            token = scanner.scan();
+            descriptions.add(token + " " + token.getStartOffset() + "-" + token.getEndOffset() + " " +
+                                     token.getLine() + ":" + token.getColumn() + " " + token.getSymbol());
+        } while (token.kind != Token.Kind.EOF);
+        for (proj9AbulhabFengMaoSavillo.bantam.util.Error error : handler.getErrorList())
+            descriptions.add(error.toString());
+        return descriptions;
+    }
+
+    /**
+     * Returns the kind, spelling and symbol id of the Token built for every
+     * token of a buffer, in order
+     */
+    private static List<String> describeSymbols(TokenBuffer tokens)
+    {
+        List<String> descriptions = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            Token token = tokens.getToken(i);
+            descriptions.add(token.kind + " " + token.spelling + " " + token.getSymbol());
+        }
+        return descriptions;
+    }
+
+    /**
+     * Returns the kind, offsets and line of every token of a buffer
+     */
+    private static List<String> describe(TokenBuffer tokens)
+    {
+        List<String> descriptions = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++)
+            descriptions.add(tokens.getKind(i) + " " + tokens.getStart(i) + "-" + tokens.getEnd(i) +
+                                     " line " + tokens.getLine(i));
+        return descriptions;
+    }
+
+    /**
+     * A Reader of a head, then a given number of one fill char, then a tail,
+     * that holds none of the fill in memory
+     */
+    private static class FillReader extends Reader
+    {
+        private final String head;
+        private final char fill;
+        private long fillLeft;
+        private final String tail;
+        private int headPosition;
+        private int tailPosition;
+
+        private FillReader(String head, char fill, long count, String tail)
+        {
+            this.head = head;
+            this.fill = fill;
+            this.fillLeft = count;
+            this.tail = tail;
+        }
+
+        @Override
+        public int read(char[] chars, int offset, int length)
+        {
+            if (this.headPosition < this.head.length())
+            {
+                int count = Math.min(length, this.head.length() - this.headPosition);
+                this.head.getChars(this.headPosition, this.headPosition + count, chars, offset);
+                this.headPosition += count;
+                return count;
+            }
+            if (this.fillLeft > 0)
+            {
+                int count = (int) Math.min(length, this.fillLeft);
+                Arrays.fill(chars, offset, offset + count, this.fill);
+                this.fillLeft -= count;
+                return count;
+            }
+            if (this.tailPosition == this.tail.length())
+                return -1;
+            int count = Math.min(length, this.tail.length() - this.tailPosition);
+            this.tail.getChars(this.tailPosition, this.tailPosition + count, chars, offset);
+            this.tailPosition += count;
+            return count;
+        }
+
+        @Override
+        public void close() { }
+    }
+
+    /**
+     * Counts a check, and prints its description if it failed
+     *
+     * @param passed      whether the check passed
+     * @param description what was checked
+     */
+    private static void check(boolean passed, String description)
+    {
+        checkCount++;
+        if (!passed)
+        {
+            failureCount++;
+            System.out.println("FAILED: " + description);
+        }
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * File: LexerTool.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the LexerTool class, a command-line program that scans
+ * many Bantam Java files and writes their tokens in a machine-readable form.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import proj9AbulhabFengMaoSavillo.bantam.util.Error;
+import proj9AbulhabFengMaoSavillo.bantam.util.ErrorHandler;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The LexerTool class scans the files, directories and globs given on the
+ * command line with a BatchScanner and writes the results to standard output
+ * or a file in one of several formats, then prints a summary of the run to
+ * standard error. Usage:
+ * <pre>
+ *   LexerTool [-output=none|counts|binary|jsonl] [-stats=text|json|none]
+ *             [-threads=N] [-max-errors=N] [-include=GLOB] [-out=FILE] path...
+ * </pre>
+ * A path naming a directory is scanned for files whose names match the
+ * include glob, "*.{btm,java}" unless given; a path holding any of the chars
+ * *?[{ is a glob matched against the files under its longest plain prefix.
+ * The program exits with status 1 if any errors were found.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class LexerTool
+{
+    /**
+     * The ways the results of each file can be written
+     */
+    public enum Output
+    {
+        NONE,   // nothing, only the summary
+        COUNTS, // a tab-separated line per file: name, bytes, tokens, errors
+        BINARY, // per file its name, size and a TokenCache entry of its tokens and errors
+        JSONL   // a JSON object per token and per error, then one for the file
+    }
+
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String GLOB_CHARS = "*?[{";
+
+    private final Output output;
+    private final Writer writer;          // for the text outputs
+    private final DataOutputStream data;  // for the binary output
+
+    private long fileCount;
+    private long byteCount;
+    private final long[] kindCounts = new long[KINDS.length];
+    private long errorCount;
+    private long unlistedErrorCount;
+
+    /**
+     * Creates a new LexerTool that writes to the given channel
+     *
+     * @param output  the format to write in
+     * @param channel the channel to write to
+     */
+    private LexerTool(Output output, WritableByteChannel channel)
+    {
+        this.output = output;
+        OutputStream stream = Channels.newOutputStream(channel);
+        if (output == Output.BINARY)
+        {
+            this.data = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+            this.writer = null;
+        }
+        else
+        {
+            this.data = null;
+            this.writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Scans the paths given on the command line as described above
+     */
+    public static void main(String[] args)
+    {
+        Output output = Output.COUNTS;
+        String stats = "text";
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxErrors = ErrorHandler.DEFAULT_MAX_ERRORS;
+        String include = "*.{btm,java}";
+        String outFile = null;
+
+        int firstPath = 0;
+        try
+        {
+            for (; firstPath < args.length && args[firstPath].startsWith("-"); firstPath++)
+            {
+                String option = args[firstPath];
+                String value = option.substring(option.indexOf('=') + 1);
+                if (option.startsWith("-output="))
+                    output = Output.valueOf(value.toUpperCase());
+                else if (option.startsWith("-stats=") &&
+                        (value.equals("text") || value.equals("json") || value.equals("none")))
+                    stats = value;
+                else if (option.startsWith("-threads="))
+                    threads = Integer.parseInt(value);
+                else if (option.startsWith("-max-errors="))
+                    maxErrors = Integer.parseInt(value);
+                else if (option.startsWith("-include="))
+                    include = value;
+                else if (option.startsWith("-out="))
+                    outFile = value;
+                else
+                    throw new IllegalArgumentException(option);
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.err.println("Bad option: " + args[firstPath]);
+            System.exit(-1);
+        }
+
+        //make sure at least one path was given
+        if (firstPath == args.length)
+        {
+            System.err.println("Missing input path");
+            System.exit(-1);
+        }
+
+        long start = System.nanoTime();
+        try
+        {
+            List<String> filenames = new ArrayList<>();
+            for (int i = firstPath; i < args.length; i++)
+                filenames.addAll(expand(args[i], include));
+
+            WritableByteChannel channel = outFile == null ?
+                    Channels.newChannel(new FileOutputStream(FileDescriptor.out)) :
+                    FileChannel.open(Paths.get(outFile), StandardOpenOption.CREATE,
+                                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            LexerTool tool = new LexerTool(output, channel);
+            new BatchScanner(threads, maxErrors).scan(filenames,
+                                                      output == Output.BINARY || output == Output.JSONL,
+                                                      tool::write);
+            tool.close();
+            channel.close();
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (stats.equals("text"))
+                System.err.print(tool.formatStats(seconds));
+            else if (stats.equals("json"))
+                System.err.println(tool.formatJsonStats(seconds));
+            System.exit(tool.errorCount > 0 ? 1 : 0);
+        }
+        catch (IOException | UncheckedIOException e)
+        {
+            System.err.println("Lexing failed: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Turns a path from the command line into the files it names
+     *
+     * @param path    a file, a directory or a glob
+     * @param include the glob the names of files in a directory must match
+     * @return the names of the files, sorted unless the path is a single file
+     */
+    static List<String> expand(String path, String include) throws IOException
+    {
+        //the longest prefix of whole path elements without glob chars is where to look
+        int globAt = -1;
+        for (int i = 0; i < path.length() && globAt < 0; i++)
+            if (GLOB_CHARS.indexOf(path.charAt(i)) >= 0)
+                globAt = i;
+
+        PathMatcher matcher;
+        Path root;
+        if (globAt >= 0)
+        {
+            int slash = Math.max(path.lastIndexOf('/', globAt), path.lastIndexOf(File.separatorChar, globAt));
+            root = Paths.get(slash < 0 ? "" : slash == 0 ? path.substring(0, 1) : path.substring(0, slash));
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + path);
+        }
+        else if (Files.isDirectory(Paths.get(path)))
+        {
+            root = Paths.get(path);
+            PathMatcher nameMatcher = FileSystems.getDefault().getPathMatcher("glob:" + include);
+            matcher = file -> nameMatcher.matches(file.getFileName());
+        }
+        else
+        {
+            //a missing file is passed on so scanning it reports the error
+            List<String> single = new ArrayList<>();
+            single.add(path);
+            return single;
+        }
+
+        if (!Files.isDirectory(root))
+            return new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root))
+        {
+            return files.filter(file -> Files.isRegularFile(file) && matcher.matches(file))
+                        .map(Path::toString)
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Adds a file's result to the totals and writes it in the chosen format
+     *
+     * @param result the result of scanning the file
+     */
+    private void write(BatchScanner.Result result)
+    {
+        this.fileCount++;
+        this.byteCount += result.getByteCount();
+        for (Token.Kind kind : KINDS)
+            this.kindCounts[kind.ordinal()] += result.getTokenCount(kind);
+        int errors = result.getErrorList().size() + result.getDroppedErrorCount();
+        this.errorCount += errors;
+        this.unlistedErrorCount += result.getDroppedErrorCount();
+
+        try
+        {
+            switch (this.output)
+            {
+                case COUNTS:
+                    this.writer.write(result.getFilename() + "\t" + result.getByteCount() + "\t" +
+                                      result.getTokenCount() + "\t" + errors + "\n");
+                    break;
+                case BINARY:
+                    this.writeBinary(result);
+                    break;
+                case JSONL:
+                    this.writeJson(result);
+                    break;
+                default:
+                    break;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a file's name and size followed by a TokenCache entry of its
+     * tokens and errors; a file that could not be read has no tokens
+     */
+    private void writeBinary(BatchScanner.Result result) throws IOException
+    {
+        TokenBuffer tokens = result.getTokens();
+        this.data.writeUTF(result.getFilename());
+        this.data.writeLong(result.getByteCount());
+        TokenCache.writeEntry(this.data, tokens != null ? tokens : new TokenBuffer(""), result.getErrorList());
+    }
+
+    /**
+     * Writes a JSON object for each of a file's tokens, giving the line as
+     * Token.position does and the column of its first char, then one for
+     * each error and one for the file
+     */
+    private void writeJson(BatchScanner.Result result) throws IOException
+    {
+        StringBuilder line = new StringBuilder();
+        StringBuilder file = appendJsonString(new StringBuilder("{\"file\":"), result.getFilename());
+
+        TokenBuffer tokens = result.getTokens();
+        for (int i = 0; tokens != null && i < tokens.size(); i++)
+        {
+            line.setLength(0);
+            line.append(file).append(",\"kind\":\"").append(tokens.getKind(i).name())
+                .append("\",\"position\":").append(tokens.getLine(i))
+                .append(",\"column\":").append(tokens.getColumn(i))
+                .append(",\"start\":").append(tokens.getStart(i))
+                .append(",\"end\":").append(tokens.getEnd(i))
+                .append(",\"spelling\":");
+            appendJsonString(line, tokens.getSpelling(i)).append("}\n");
+            this.writer.append(line);
+        }
+
+        for (Error error : result.getErrorList())
+        {
+            line.setLength(0);
+            line.append(file).append(",\"error\":\"").append(error.getKind().name())
+                .append("\",\"line\":").append(error.getLineNum())
+                .append(",\"message\":");
+            appendJsonString(line, error.getMessage()).append("}\n");
+            this.writer.append(line);
+        }
+
+        line.setLength(0);
+        line.append(file).append(",\"bytes\":").append(result.getByteCount())
+            .append(",\"tokens\":").append(result.getTokenCount())
+            .append(",\"errors\":").append(result.getErrorList().size() + result.getDroppedErrorCount())
+            .append(",\"unlistedErrors\":").append(result.getDroppedErrorCount())
+            .append("}\n");
+        this.writer.append(line);
+    }
+
+    /**
+     * Flushes everything written so far to the channel
+     */
+    private void close() throws IOException
+    {
+        if (this.writer != null)
+            this.writer.flush();
+        else
+            this.data.flush();
+    }
+
+    /**
+     * Formats the totals of the run for people to read
+     *
+     * @param seconds the time the run took
+     * @return the lines of the summary
+     */
+    private String formatStats(double seconds)
+    {
+        long tokenCount = 0;
+        StringBuilder kinds = new StringBuilder();
+        for (Token.Kind kind : KINDS)
+        {
+            long count = this.kindCounts[kind.ordinal()];
+            tokenCount += count;
+            if (count > 0)
+                kinds.append(String.format("    %-12s %d%n", kind, count));
+        }
+
+        return String.format("%d files, %d bytes, %d tokens, %d errors (%d not listed) in %.3f s%n",
+                             this.fileCount, this.byteCount, tokenCount, this.errorCount,
+                             this.unlistedErrorCount, seconds) +
+               kinds +
+               String.format("%.1f MB/s, %.0f tokens/s%n", this.byteCount / 1e6 / seconds, tokenCount / seconds);
+    }
+
+    /**
+     * Formats the totals of the run as one JSON object
+     *
+     * @param seconds the time the run took
+     * @return the object
+     */
+    private String formatJsonStats(double seconds)
+    {
+        long tokenCount = 0;
+        StringBuilder kinds = new StringBuilder();
+        for (Token.Kind kind : KINDS)
+        {
+            long count = this.kindCounts[kind.ordinal()];
+            tokenCount += count;
+            if (count > 0)
+                kinds.append(kinds.length() == 0 ? "" : ",").append('"').append(kind.name()).append("\":").append(count);
+        }
+
+        return "{\"files\":" + this.fileCount +
+               ",\"bytes\":" + this.byteCount +
+               ",\"tokens\":" + tokenCount +
+               ",\"kinds\":{" + kinds + "}" +
+               ",\"errors\":" + this.errorCount +
+               ",\"unlistedErrors\":" + this.unlistedErrorCount +
+               ",\"seconds\":" + String.format(Locale.ROOT, "%.6f", seconds) +
+               ",\"megabytesPerSecond\":" + String.format(Locale.ROOT, "%.3f", this.byteCount / 1e6 / seconds) +
+               "}";
+    }
+
+    /**
+     * Appends the given chars as a quoted JSON string
+     *
+     * @param json  the JSON being built
+     * @param chars the chars to quote
+     * @return the JSON being built
+     */
+    private static StringBuilder appendJsonString(StringBuilder json, CharSequence chars)
+    {
+        json.append('"');
+        for (int i = 0; i < chars.length(); i++)
+        {
+            char c = chars.charAt(i);
+            if (c == '"' || c == '\\')
+                json.append('\\').append(c);
+            else if (c == '\n')
+                json.append("\\n");
+            else if (c == '\r')
+                json.append("\\r");
+            else if (c == '\t')
+                json.append("\\t");
+            else if (c < 0x20)
+                json.append(String.format("\\u%04x", (int) c));
+            else
+                json.append(c);
+        }
+        return json.append('"');
+    }
+}
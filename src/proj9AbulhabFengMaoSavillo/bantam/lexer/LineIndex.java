@@ -0,0 +1,205 @@
+/*
+ * File: LineIndex.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the LineIndex class, which maps offsets in a text to
+ * lines and columns and back.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import java.util.Arrays;
+
+/**
+ * The LineIndex class holds the offset of the first char of every line of a
+ * text in one sorted int array, so that finding the line of an offset is a
+ * binary search and finding the start of a line is an array read. Line
+ * breaks are counted the way SourceFile counts them: \n, \r and \r\n each
+ * end a line. After an edit, only the starts near the edit are found again;
+ * the later ones are shifted.
+ *
+ * Lines and columns are indexed from 0 here, so a Scanner line number is
+ * the line index plus one.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class LineIndex
+{
+    private int[] lineStarts; // the offset of the first char of each line
+    private int lineCount;
+
+    /**
+     * Creates a LineIndex of an empty text, which has one line
+     */
+    public LineIndex()
+    {
+        this.lineStarts = new int[16];
+        this.lineCount = 1;
+    }
+
+    /**
+     * Creates a LineIndex of the given text
+     *
+     * @param text the text to find the lines of
+     */
+    public LineIndex(CharSequence text)
+    {
+        this();
+        this.lineCount = 1 + this.findLineStarts(text, 0, text.length(), 1);
+    }
+
+    /**
+     * Returns the number of lines, which is one more than the number of line breaks
+     */
+    public int getLineCount()
+    {
+        return this.lineCount;
+    }
+
+    /**
+     * Returns the offset of the first char of the given line
+     *
+     * @param line the index of the line, starting from 0
+     * @return the offset of its first char
+     */
+    public int getLineStart(int line)
+    {
+        if (line < 0 || line >= this.lineCount)
+            throw new IndexOutOfBoundsException("Line " + line + " out of range 0.." + this.lineCount);
+        return this.lineStarts[line];
+    }
+
+    /**
+     * Returns the line holding the char at the given offset
+     *
+     * @param offset an offset in the text, which may also be its length
+     * @return the index of the line, starting from 0
+     */
+    public int getLine(int offset)
+    {
+        int line = Arrays.binarySearch(this.lineStarts, 0, this.lineCount, offset);
+        return line >= 0 ? line : Math.max(-line - 2, 0);
+    }
+
+    /**
+     * Returns the column of the char at the given offset
+     *
+     * @param offset an offset in the text
+     * @return the distance from the start of its line, starting from 0
+     */
+    public int getColumn(int offset)
+    {
+        return offset - this.lineStarts[this.getLine(offset)];
+    }
+
+    /**
+     * Returns the offset of the given column of the given line
+     *
+     * @param line   the index of the line, starting from 0
+     * @param column the distance from the start of the line
+     * @return the offset in the text
+     */
+    public int getOffset(int line, int column)
+    {
+        return this.getLineStart(line) + column;
+    }
+
+    /**
+     * Brings the line starts up to date after a range of the text was replaced.
+     * The lines up to the one holding the char before the edit are unchanged;
+     * the starts from there to just past the inserted chars are found again in
+     * the new text, replacing the old ones there; later starts are shifted.
+     *
+     * @param text           the text after the edit
+     * @param offset         the offset of the first replaced char
+     * @param removedLength  the number of chars removed
+     * @param insertedLength the number of chars inserted in their place
+     * @return the number of old lines, after the one holding the char before
+     * the edit, whose starts were replaced
+     */
+    public int edit(CharSequence text, int offset, int removedLength, int insertedLength)
+    {
+        int delta = insertedLength - removedLength;
+        int lastUndamagedLine = this.getLine(Math.max(offset - 1, 0));
+        int scanFrom = this.lineStarts[lastUndamagedLine];
+        int scanTo = Math.min(offset + insertedLength + 1, text.length());
+
+        //the old lines starting after the removed and the scanned chars keep their starts, shifted
+        int tail = lastUndamagedLine + 1;
+        while (tail < this.lineCount && (this.lineStarts[tail] <= offset + removedLength ||
+                this.lineStarts[tail] + delta <= scanTo))
+            tail++;
+        int replaced = tail - lastUndamagedLine - 1;
+        int tailLength = this.lineCount - tail;
+
+        //move the tail to after the new starts, then find them in between
+        int found = countLineBreaks(text, scanFrom, scanTo);
+        int tailFrom = lastUndamagedLine + 1 + found;
+        this.ensureCapacity(tailFrom + tailLength);
+        System.arraycopy(this.lineStarts, tail, this.lineStarts, tailFrom, tailLength);
+        for (int i = tailFrom; i < tailFrom + tailLength; i++)
+            this.lineStarts[i] += delta;
+        this.findLineStarts(text, scanFrom, scanTo, lastUndamagedLine + 1);
+        this.lineCount = tailFrom + tailLength;
+        return replaced;
+    }
+
+    /**
+     * Stores the starts of the lines that begin after the line breaks in a
+     * range of the text, from the given line index on
+     *
+     * @param text the text to search
+     * @param from the offset of the first char to look at
+     * @param to   the offset just past the last char to look at
+     * @param line the index to store the first start found at
+     * @return the number of starts found
+     */
+    private int findLineStarts(CharSequence text, int from, int to, int line)
+    {
+        int found = 0;
+        for (int i = from; i < to; i++)
+        {
+            if (isLineBreak(text, i))
+            {
+                this.ensureCapacity(line + found + 1);
+                this.lineStarts[line + found++] = i + 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Counts the line breaks in a range of the text
+     */
+    private static int countLineBreaks(CharSequence text, int from, int to)
+    {
+        int breaks = 0;
+        for (int i = from; i < to; i++)
+            if (isLineBreak(text, i))
+                breaks++;
+        return breaks;
+    }
+
+    /**
+     * Returns whether the char at the given offset ends a line, where the
+     * \r of a \r\n does not
+     */
+    private static boolean isLineBreak(CharSequence text, int offset)
+    {
+        char c = text.charAt(offset);
+        return c == '\n' || (c == '\r' && (offset + 1 == text.length() || text.charAt(offset + 1) != '\n'));
+    }
+
+    /**
+     * Grows the array, if needed, to hold the given number of line starts
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > this.lineStarts.length)
+            this.lineStarts = Arrays.copyOf(this.lineStarts, Math.max(capacity, this.lineStarts.length * 2));
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * File: OffHeapTokenStore.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the OffHeapTokenStore class, which holds the tokens of
+ * very large sources outside the Java heap.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import proj9AbulhabFengMaoSavillo.bantam.util.CompilationException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The OffHeapTokenStore class holds the kinds, offsets and lines of tokens in
+ * fixed-size records in segments of memory outside the heap, so that the
+ * tokens of a source of many gigabytes neither fill the heap nor give the
+ * garbage collector anything to trace but one small object per segment.
+ * Segments are direct buffers until a given number of bytes is reached, then
+ * regions of a temporary file mapped into memory, which the operating system
+ * may page out. Offsets are longs, so sources past 2G chars can be stored.
+ *
+ * One thread adds tokens, as a Scanner running scanToStore(); any number of
+ * threads may read the tokens below size() at the same time.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class OffHeapTokenStore implements Closeable
+{
+    /**
+     * The most bytes of direct memory a store made with the default constructor
+     * uses before it spills to a mapped file
+     */
+    public static final long DEFAULT_MAX_DIRECT_BYTES = 256L << 20;
+
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+
+    // each record holds the start offset with the kind entry in its top byte,
+    // the end offset and the line number
+    private static final int RECORD_BYTES = 20;
+    private static final int END = 8;
+    private static final int LINE = 16;
+    private static final int KIND_SHIFT = 56;
+    private static final long START_MASK = (1L << KIND_SHIFT) - 1;
+
+    // the low bits of each kind entry hold the kind's ordinal, the high bits the
+    // number of eof chars ending the spelling past the end of the text, as in TokenBuffer
+    private static final int KIND_BITS = 6;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    private static final int SEGMENT_SHIFT = 20; // a segment holds 1M tokens
+    private static final int SEGMENT_TOKENS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_BYTES = SEGMENT_TOKENS * RECORD_BYTES;
+
+    private final long maxDirectBytes;
+    private final Path spillDirectory;
+
+    // replaced whole when a segment is added, so readers always see a complete array
+    private volatile ByteBuffer[] segments = new ByteBuffer[0];
+    private final AtomicLong size = new AtomicLong(); // published by the writer after each record
+
+    private long directBytes;
+    private Path spillFile;
+    private FileChannel spillChannel;
+    private long mappedBytes;
+
+    /**
+     * Creates an empty store that spills to a file in the temporary directory
+     * after 256 MB of direct memory
+     */
+    public OffHeapTokenStore()
+    {
+        this(DEFAULT_MAX_DIRECT_BYTES, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Creates an empty store
+     *
+     * @param maxDirectBytes the most bytes of direct memory to use, rounded up to a whole segment
+     * @param spillDirectory the directory to create the file to map further segments from in,
+     *                       or null to always use direct memory
+     */
+    public OffHeapTokenStore(long maxDirectBytes, Path spillDirectory)
+    {
+        this.maxDirectBytes = maxDirectBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Appends a token to the store; called by the writing thread only
+     *
+     * @param kind    the kind of the token
+     * @param start   the offset of its first char
+     * @param end     the offset just past its last char
+     * @param line    its line number
+     * @param pastEnd the number of eof chars its spelling has past the end of the text
+     */
+    void add(Token.Kind kind, long start, long end, int line, int pastEnd)
+    {
+        long index = this.size.get();
+        int segment = (int) (index >>> SEGMENT_SHIFT);
+        ByteBuffer[] segments = this.segments;
+        if (segment == segments.length)
+        {
+            segments = Arrays.copyOf(segments, segment + 1);
+            segments[segment] = this.allocateSegment();
+            this.segments = segments;
+        }
+
+        ByteBuffer records = segments[segment];
+        int position = getPosition(index);
+        long kindEntry = kind.ordinal() | (pastEnd << KIND_BITS);
+        records.putLong(position, (kindEntry << KIND_SHIFT) | start);
+        records.putLong(position + END, end);
+        records.putInt(position + LINE, line);
+        this.size.lazySet(index + 1);
+    }
+
+    /**
+     * Returns the number of tokens in the store
+     */
+    public long size()
+    {
+        return this.size.get();
+    }
+
+    /**
+     * Returns the kind of the token at the given index
+     */
+    public Token.Kind getKind(long index)
+    {
+        return KINDS[(int) (this.getKindEntry(index) & KIND_MASK)];
+    }
+
+    /**
+     * Returns the offset of the first char of the token at the given index
+     */
+    public long getStart(long index)
+    {
+        return this.getRecords(index).getLong(getPosition(index)) & START_MASK;
+    }
+
+    /**
+     * Returns the offset just past the last char of the token at the given index
+     */
+    public long getEnd(long index)
+    {
+        return this.getRecords(index).getLong(getPosition(index) + END);
+    }
+
+    /**
+     * Returns the line number of the token at the given index, as Token.position reports it
+     */
+    public int getLine(long index)
+    {
+        return this.getRecords(index).getInt(getPosition(index) + LINE);
+    }
+
+    /**
+     * Returns the number of eof chars the spelling of the token at the given
+     * index has past the end of the text
+     */
+    int getPastEnd(long index)
+    {
+        return (int) (this.getKindEntry(index) >>> KIND_BITS);
+    }
+
+    /**
+     * Returns the number of bytes of direct memory the store holds
+     */
+    public long getDirectBytes()
+    {
+        return this.directBytes;
+    }
+
+    /**
+     * Returns the number of bytes of the spill file the store has mapped
+     */
+    public long getMappedBytes()
+    {
+        return this.mappedBytes;
+    }
+
+    /**
+     * Drops the segments and deletes the spill file. The memory of the segments
+     * is freed once the garbage collector finds their buffers unreachable.
+     * The store must not be used after it is closed.
+     */
+    @Override
+    public void close()
+    {
+        this.segments = new ByteBuffer[0];
+        this.size.set(0);
+        if (this.spillChannel != null)
+        {
+            try
+            {
+                this.spillChannel.close();
+                //the file cannot be deleted while mapped on some systems, so try again at exit
+                if (!this.spillFile.toFile().delete())
+                    this.spillFile.toFile().deleteOnExit();
+            }
+            catch (IOException e)
+            {
+                this.spillFile.toFile().deleteOnExit();
+            }
+            this.spillChannel = null;
+        }
+    }
+
+    /**
+     * Allocates the next segment from direct memory, or maps it from the spill
+     * file once the direct memory allowed is used up
+     */
+    private ByteBuffer allocateSegment()
+    {
+        ByteBuffer segment;
+        if (this.spillDirectory == null || this.directBytes < this.maxDirectBytes)
+        {
+            segment = ByteBuffer.allocateDirect(SEGMENT_BYTES);
+            this.directBytes += SEGMENT_BYTES;
+        }
+        else
+        {
+            try
+            {
+                if (this.spillChannel == null)
+                {
+                    this.spillFile = Files.createTempFile(this.spillDirectory, "bantam-tokens-", ".bin");
+                    this.spillChannel = FileChannel.open(this.spillFile, StandardOpenOption.READ,
+                                                         StandardOpenOption.WRITE);
+                }
+                segment = this.spillChannel.map(FileChannel.MapMode.READ_WRITE, this.mappedBytes, SEGMENT_BYTES);
+                this.mappedBytes += SEGMENT_BYTES;
+            }
+            catch (IOException e)
+            {
+                throw new CompilationException("Tokens could not be spilled to " + this.spillDirectory +
+                                               ": " + e.getMessage());
+            }
+        }
+        return segment.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns the segment holding the record of the token at the given index
+     */
+    private ByteBuffer getRecords(long index)
+    {
+        if (index < 0 || index >= this.size.get())
+            throw new IndexOutOfBoundsException("Token index " + index + " out of range 0.." + this.size.get());
+        //absolute reads leave the buffer's position alone, so threads can share it
+        return this.segments[(int) (index >>> SEGMENT_SHIFT)];
+    }
+
+    /**
+     * Returns the offset of the record of the token at the given index within its segment
+     */
+    private static int getPosition(long index)
+    {
+        return (int) (index & (SEGMENT_TOKENS - 1)) * RECORD_BYTES;
+    }
+
+    /**
+     * Returns the kind entry of the token at the given index
+     */
+    private long getKindEntry(long index)
+    {
+        return this.getRecords(index).getLong(getPosition(index)) >>> KIND_SHIFT;
+    }
+}
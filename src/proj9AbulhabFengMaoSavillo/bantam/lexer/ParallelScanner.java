@@ -0,0 +1,394 @@
+/*
+ * File: ParallelScanner.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the ParallelScanner class, which scans one large Bantam
+ * Java source on several threads at once.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import proj9AbulhabFengMaoSavillo.bantam.util.CompilationException;
+import proj9AbulhabFengMaoSavillo.bantam.util.Error;
+import proj9AbulhabFengMaoSavillo.bantam.util.ErrorHandler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The ParallelScanner class splits a text into chunks at line breaks and
+ * scans every chunk on its own thread, guessing that no comment or string
+ * is open where the chunk starts. The chunks are then stitched together in
+ * order: the tokens of the chunk before are followed past the chunk start
+ * until one starts where a token of the chunk also starts, and from there on
+ * the chunk's own tokens are taken. When the guess was right this happens at
+ * the first token; when the chunk actually started inside a comment or
+ * string, the tokens up to that point are re-scanned sequentially. Line
+ * numbers are counted per chunk beforehand, so the tokens and the errors,
+ * in their order, are exactly those of the sequential Scanner.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class ParallelScanner
+{
+    /**
+     * The smallest chunk worth a thread of its own, in chars
+     */
+    public static final int DEFAULT_MIN_CHUNK_LENGTH = 1 << 20;
+
+    private final int parallelism;
+    private final int minChunkLength;
+    private long relexedCount;
+
+    /**
+     * Creates a new ParallelScanner that uses one thread per available processor
+     */
+    public ParallelScanner()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new ParallelScanner that uses the given number of threads
+     *
+     * @param parallelism the number of chunks to scan at once
+     */
+    public ParallelScanner(int parallelism)
+    {
+        this(parallelism, DEFAULT_MIN_CHUNK_LENGTH);
+    }
+
+    /**
+     * Creates a new ParallelScanner
+     *
+     * @param parallelism    the number of chunks to scan at once
+     * @param minChunkLength the fewest chars to give a chunk
+     */
+    ParallelScanner(int parallelism, int minChunkLength)
+    {
+        this.parallelism = parallelism;
+        this.minChunkLength = minChunkLength;
+    }
+
+    /**
+     * Reads the given file whole and scans it
+     *
+     * @param filename the file to scan
+     * @param handler  the ErrorHandler to register the file's errors to
+     * @return the tokens of the file, not including EOF
+     */
+    public TokenBuffer scan(String filename, ErrorHandler handler)
+    {
+        String text;
+        try
+        {
+            text = new String(Files.readAllBytes(Paths.get(filename)));
+        }
+        catch (IOException e)
+        {
+            throw new CompilationException("File " + filename + " could not be read.");
+        }
+        return this.scan(text, filename, handler);
+    }
+
+    /**
+     * Scans the given text
+     *
+     * @param text     the text to scan, which must not change while it is scanned
+     * @param filename the name of the file the text belongs to, for error messages
+     * @param handler  the ErrorHandler to register the text's errors to
+     * @return the same tokens Scanner.scanToBuffer() gives, registering the same errors
+     */
+    public TokenBuffer scan(CharSequence text, String filename, ErrorHandler handler)
+    {
+        List<Integer> starts = this.split(text);
+        int count = starts.size();
+        starts.add(text.length());
+        this.relexedCount = 0;
+        if (count == 1)
+            return new Scanner(text, filename, handler).scanToBuffer();
+
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try
+        {
+            //count the line breaks of every chunk, to know the line each starts on
+            List<ForkJoinTask<Integer>> breakCounts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+            {
+                int from = starts.get(i);
+                int to = starts.get(i + 1);
+                breakCounts.add(pool.submit(() -> countLineBreaks(text, from, to)));
+            }
+
+            List<ForkJoinTask<Chunk>> scans = new ArrayList<>(count);
+            int line = 1;
+            for (int i = 0; i < count; i++)
+            {
+                Chunk chunk = new Chunk(text, filename, starts.get(i), starts.get(i + 1), line);
+                scans.add(pool.submit(chunk::scanAhead));
+                line += breakCounts.get(i).join();
+            }
+
+            List<Chunk> chunks = new ArrayList<>(count);
+            for (ForkJoinTask<Chunk> scan : scans)
+                chunks.add(scan.join());
+            return this.stitch(text, chunks, handler);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the number of tokens the last scan had to scan sequentially
+     * while stitching, because a chunk did not start between tokens
+     */
+    public long getRelexedCount()
+    {
+        return this.relexedCount;
+    }
+
+    /**
+     * Picks the chunk starts: about evenly spaced, each just after a \n
+     *
+     * @param text the text to split
+     * @return the offset of the first char of each chunk, starting with 0
+     */
+    private List<Integer> split(CharSequence text)
+    {
+        //a few chunks per thread even out their different speeds; one thread needs no chunks
+        int chunkCount = this.parallelism == 1 ? 1 :
+                (int) Math.max(1, Math.min(this.parallelism * 4L, text.length() / Math.max(1, this.minChunkLength)));
+        List<Integer> starts = new ArrayList<>(chunkCount);
+        starts.add(0);
+        for (int i = 1; i < chunkCount; i++)
+        {
+            int start = (int) ((long) text.length() * i / chunkCount);
+            start = Math.max(start, starts.get(starts.size() - 1));
+            while (start < text.length() && text.charAt(start) != '\n')
+                start++;
+            if (start + 1 < text.length() && start + 1 > starts.get(starts.size() - 1))
+                starts.add(start + 1);
+        }
+        return starts;
+    }
+
+    /**
+     * Counts the line breaks in part of the text the way SourceFile does,
+     * where \r\n is one break; the part must start just after a \n
+     */
+    private static int countLineBreaks(CharSequence text, int from, int to)
+    {
+        int breaks = 0;
+        for (int i = from; i < to; i++)
+        {
+            char c = text.charAt(i);
+            if (c == '\r' || (c == '\n' && (i == from || text.charAt(i - 1) != '\r')))
+                breaks++;
+        }
+        return breaks;
+    }
+
+    /**
+     * Joins the tokens of the chunks into one buffer, following the exact
+     * tokens across each chunk start until they meet the chunk's own tokens
+     *
+     * @param text    the text scanned
+     * @param chunks  the chunks, scanned ahead
+     * @param handler the ErrorHandler to register the errors of the joined tokens to
+     * @return the joined tokens
+     */
+    private TokenBuffer stitch(CharSequence text, List<Chunk> chunks, ErrorHandler handler)
+    {
+        TokenBuffer tokens = new TokenBuffer(text);
+
+        //the tokens of current from index on are exact, and its scanner goes on exactly
+        Chunk current = chunks.get(0);
+        int index = 0;
+        int next = 1; // the next chunk to meet
+        while (current.ensureToken(index))
+        {
+            int limit = next < chunks.size() ? chunks.get(next).start : Integer.MAX_VALUE;
+            int start = current.tokens.getStart(index);
+            if (start >= limit)
+            {
+                Chunk chunk = chunks.get(next);
+                int match = chunk.findTokenStartingAt(start);
+                if (match >= 0)
+                {
+                    current = chunk;
+                    index = match;
+                }
+                //otherwise, if every token of the chunk has been passed without meeting
+                //one, try the next chunk; if not, take this token and look again
+                if (match >= 0 || start >= chunk.getLastStart())
+                {
+                    next++;
+                    continue;
+                }
+            }
+
+            //copy the run of tokens scanned so far up to the start of the next chunk
+            int runEnd = Math.max(index + 1, current.findFirstStartingAt(limit));
+            tokens.append(current.tokens, index, runEnd);
+            current.registerErrors(index, runEnd, handler);
+            index = runEnd;
+        }
+
+        //errors found while scanning EOF
+        current.registerErrors(index, index + 1, handler);
+
+        this.relexedCount = 0;
+        for (Chunk chunk : chunks)
+            this.relexedCount += chunk.relexedCount;
+        return tokens;
+    }
+
+    /**
+     * The tokens scanned from one chunk of the text, and the Scanner they
+     * came from, which can go on scanning past the end of the chunk
+     */
+    private static class Chunk
+    {
+        private final int start;
+        private final int end;
+        private final Scanner scanner;
+        private final ErrorHandler scanHandler;
+        private final TokenBuffer tokens;
+        private final List<Integer> errorTokens = new ArrayList<>(); // the index of the token of each error
+        private final List<Error> errors = new ArrayList<>();
+        private int errorPosition;  // the next error to register
+        private boolean ended;      // true once the scanner has reached EOF
+        private int relexedCount;   // tokens scanned one at a time while stitching
+
+        private Chunk(CharSequence text, String filename, int start, int end, int line)
+        {
+            this.start = start;
+            this.end = end;
+            this.scanHandler = new ErrorHandler(Integer.MAX_VALUE);
+            this.scanner = new Scanner(new SourceFile(text, filename, start, line), this.scanHandler);
+            this.tokens = new TokenBuffer(text);
+        }
+
+        /**
+         * Scans the tokens that start in the chunk and the first one after it
+         *
+         * @return this chunk
+         */
+        private Chunk scanAhead()
+        {
+            while (this.scanOne() && this.tokens.getStart(this.tokens.size() - 1) < this.end) { }
+            return this;
+        }
+
+        /**
+         * Scans one more token, noting the errors found on the way
+         *
+         * @return false if EOF was reached instead
+         */
+        private boolean scanOne()
+        {
+            if (this.ended)
+                return false;
+
+            Token.Kind kind = this.scanner.scanInto(this.tokens);
+            this.ended = kind == Token.Kind.EOF;
+            if (this.scanHandler.errorsFound())
+            {
+                int index = this.ended ? this.tokens.size() : this.tokens.size() - 1;
+                for (Error error : this.scanHandler.getErrorList())
+                {
+                    this.errorTokens.add(index);
+                    this.errors.add(error);
+                }
+                this.scanHandler.clear();
+            }
+            return !this.ended;
+        }
+
+        /**
+         * Makes sure the token at the given index has been scanned
+         *
+         * @return false if the scanner reached EOF first
+         */
+        private boolean ensureToken(int index)
+        {
+            while (index >= this.tokens.size())
+            {
+                if (!this.scanOne())
+                    return false;
+                this.relexedCount++;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the index of the token scanned ahead that starts at the given
+         * offset, or -1 if there is none
+         */
+        private int findTokenStartingAt(int offset)
+        {
+            int index = this.tokens.findTokenAt(offset);
+            if (index < this.tokens.size() && this.tokens.getStart(index) == offset)
+                return index;
+            return -1;
+        }
+
+        /**
+         * Returns the index of the first token scanned so far that starts at or
+         * after the given offset, or the number of tokens if there is none
+         */
+        private int findFirstStartingAt(int offset)
+        {
+            int low = 0;
+            int high = this.tokens.size();
+            while (low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if (this.tokens.getStart(middle) < offset)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        /**
+         * Returns the start of the last token scanned ahead, or -1 if none was
+         */
+        private int getLastStart()
+        {
+            if (this.tokens.size() == 0)
+                return -1;
+            return this.tokens.getStart(this.tokens.size() - 1);
+        }
+
+        /**
+         * Registers the errors found while scanning the tokens in the given range
+         *
+         * @param from    the index of the first token, where the number of tokens stands for EOF
+         * @param to      the index just past the last token
+         * @param handler the ErrorHandler to register them to
+         */
+        private void registerErrors(int from, int to, ErrorHandler handler)
+        {
+            while (this.errorPosition < this.errors.size() && this.errorTokens.get(this.errorPosition) < from)
+                this.errorPosition++;
+            while (this.errorPosition < this.errors.size() && this.errorTokens.get(this.errorPosition) < to)
+            {
+                Error error = this.errors.get(this.errorPosition++);
+                handler.register(error.getKind(), error.getFilename(), error.getLineNum(), error.getMessage());
+            }
+        }
+    }
+}
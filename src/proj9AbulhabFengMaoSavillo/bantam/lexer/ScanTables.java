@@ -0,0 +1,284 @@
+/*
+ * File: ScanTables.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the ScanTables class, which holds the precomputed
+ * character class and state transition tables used by the table-driven
+ * scanning engine, and the table of special words identifiers are checked against.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import java.util.Arrays;
+
+/**
+ * The ScanTables class holds lookup tables for classifying ASCII characters
+ * and a transition table for the Bantam Java operators, so that the Scanner
+ * can pick the token a character starts with a single array access.
+ * Non-ASCII characters fall back to the java.lang.Character methods the
+ * switch-based engine uses, so both engines classify every character the same way.
+ * Both engines also tell identifiers from boolean constants and reserved
+ * words with identifierKind().
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+final class ScanTables
+{
+    // character classes
+    static final byte WHITESPACE = 0;
+    static final byte LETTER = 1;
+    static final byte DIGIT = 2;
+    static final byte SINGLE = 3;   // a complete single-char token
+    static final byte OPERATOR = 4; // starts an operator or a comment
+    static final byte QUOTE = 5;
+    static final byte END = 6;      // the end of file character
+    static final byte ILLEGAL = 7;
+
+    // operator states; the ones after SLASH are final
+    static final byte NO_STATE = -1; // the token ended before the current char
+    static final byte START = 0;
+    static final byte AMP = 1;
+    static final byte BAR = 2;
+    static final byte PLUS = 3;
+    static final byte MINUS = 4;
+    static final byte LESS = 5;
+    static final byte GREATER = 6;
+    static final byte EQUALS = 7;
+    static final byte SLASH = 8;
+    static final byte AND = 9;
+    static final byte OR = 10;
+    static final byte INCR = 11;
+    static final byte DECR = 12;
+    static final byte LESS_EQUALS = 13;
+    static final byte GREATER_EQUALS = 14;
+    static final byte EQUALS_EQUALS = 15;
+    static final byte BLOCK_COMMENT = 16;
+    static final byte LINE_COMMENT = 17;
+
+    private static final int ASCII = 128;
+
+    /**
+     * The class of each ASCII character
+     */
+    private static final byte[] CHAR_CLASS = new byte[ASCII];
+
+    /**
+     * Whether each ASCII character can continue an identifier
+     */
+    private static final boolean[] IDENTIFIER_PART = new boolean[ASCII];
+
+    /**
+     * The kind of the token made of just that ASCII character, for SINGLE chars
+     */
+    static final Token.Kind[] SINGLE_KIND = new Token.Kind[ASCII];
+
+    /**
+     * TRANSITION[state][c] is the state reached from the given operator state
+     * on the ASCII char c, or NO_STATE if the token ends before c
+     */
+    static final byte[][] TRANSITION = new byte[SLASH + 1][ASCII];
+
+    /**
+     * The kind of token recognized when scanning stops in each state
+     */
+    static final Token.Kind[] ACCEPT_KIND = new Token.Kind[LINE_COMMENT + 1];
+
+    static
+    {
+        for (char c = 0; c < ASCII; c++)
+        {
+            if (c == SourceFile.eof)
+                CHAR_CLASS[c] = END;
+            else if (Character.isWhitespace(c))
+                CHAR_CLASS[c] = WHITESPACE;
+            else if (Character.isDigit(c))
+                CHAR_CLASS[c] = DIGIT;
+            else if (Character.isLetter(c))
+                CHAR_CLASS[c] = LETTER;
+            else
+                CHAR_CLASS[c] = ILLEGAL;
+
+            IDENTIFIER_PART[c] = Character.isLetter(c) || Character.isDigit(c) || c == '_';
+        }
+        CHAR_CLASS['"'] = QUOTE;
+
+        single('.', Token.Kind.DOT);
+        single(':', Token.Kind.COLON);
+        single(';', Token.Kind.SEMICOLON);
+        single(',', Token.Kind.COMMA);
+        single('(', Token.Kind.LPAREN);
+        single(')', Token.Kind.RPAREN);
+        single('[', Token.Kind.LBRACKET);
+        single(']', Token.Kind.RBRACKET);
+        single('{', Token.Kind.LCURLY);
+        single('}', Token.Kind.RCURLY);
+        single('*', Token.Kind.MULDIV);
+        single('%', Token.Kind.MULDIV);
+        single('!', Token.Kind.UNARYNOT);
+
+        for (byte[] row : TRANSITION)
+            Arrays.fill(row, NO_STATE);
+
+        //a lone & or | is a badly formed binary logic operator
+        operator('&', AMP, Token.Kind.ERROR, '&', AND, Token.Kind.BINARYLOGIC);
+        operator('|', BAR, Token.Kind.ERROR, '|', OR, Token.Kind.BINARYLOGIC);
+        operator('+', PLUS, Token.Kind.PLUSMINUS, '+', INCR, Token.Kind.UNARYINCR);
+        operator('-', MINUS, Token.Kind.PLUSMINUS, '-', DECR, Token.Kind.UNARYDECR);
+        operator('<', LESS, Token.Kind.COMPARE, '=', LESS_EQUALS, Token.Kind.COMPARE);
+        operator('>', GREATER, Token.Kind.COMPARE, '=', GREATER_EQUALS, Token.Kind.COMPARE);
+        operator('=', EQUALS, Token.Kind.ASSIGN, '=', EQUALS_EQUALS, Token.Kind.COMPARE);
+        operator('/', SLASH, Token.Kind.MULDIV, '*', BLOCK_COMMENT, Token.Kind.COMMENT);
+        TRANSITION[SLASH]['/'] = LINE_COMMENT;
+        ACCEPT_KIND[LINE_COMMENT] = Token.Kind.COMMENT;
+    }
+
+    // the words an identifier token can turn out to be, and the kinds they are
+    private static final String[] SPECIAL_WORDS = {"true", "false", "break", "cast", "class",
+            "var", "else", "extends", "for", "if", "instanceof", "new", "return", "while"};
+    private static final Token.Kind[] SPECIAL_KINDS = {Token.Kind.BOOLEAN, Token.Kind.BOOLEAN,
+            Token.Kind.BREAK, Token.Kind.CAST, Token.Kind.CLASS, Token.Kind.VAR, Token.Kind.ELSE,
+            Token.Kind.EXTENDS, Token.Kind.FOR, Token.Kind.IF, Token.Kind.INSTANCEOF, Token.Kind.NEW,
+            Token.Kind.RETURN, Token.Kind.WHILE};
+
+    // the special words laid out by perfectHash(), which puts each in its own slot
+    private static final int HASH_SIZE = 32;
+    private static final String[] HASHED_WORDS = new String[HASH_SIZE];
+    private static final Token.Kind[] HASHED_KINDS = new Token.Kind[HASH_SIZE];
+
+    static
+    {
+        for (int i = 0; i < SPECIAL_WORDS.length; i++)
+        {
+            String word = SPECIAL_WORDS[i];
+            int slot = perfectHash(word.charAt(0), word.charAt(word.length() - 1), word.length());
+            if (HASHED_WORDS[slot] != null)
+                throw new IllegalStateException(word + " collides with " + HASHED_WORDS[slot]);
+            HASHED_WORDS[slot] = word;
+            HASHED_KINDS[slot] = SPECIAL_KINDS[i];
+        }
+    }
+
+    private ScanTables() { }
+
+    /**
+     * Registers a char that is a complete token by itself
+     */
+    private static void single(char c, Token.Kind kind)
+    {
+        CHAR_CLASS[c] = SINGLE;
+        SINGLE_KIND[c] = kind;
+    }
+
+    /**
+     * Registers an operator that may be followed by a second char
+     *
+     * @param first        the first char of the operator
+     * @param state        the state reached on the first char
+     * @param singleKind   the kind of the token if the second char does not follow
+     * @param second       the second char
+     * @param doubleState  the final state reached on the second char
+     * @param doubleKind   the kind of the two-char token
+     */
+    private static void operator(char first, byte state, Token.Kind singleKind,
+                                 char second, byte doubleState, Token.Kind doubleKind)
+    {
+        CHAR_CLASS[first] = OPERATOR;
+        TRANSITION[START][first] = state;
+        TRANSITION[state][second] = doubleState;
+        ACCEPT_KIND[state] = singleKind;
+        ACCEPT_KIND[doubleState] = doubleKind;
+    }
+
+    /**
+     * Returns the class of the given character
+     */
+    static byte classOf(char c)
+    {
+        if (c < ASCII)
+            return CHAR_CLASS[c];
+        else if (Character.isWhitespace(c))
+            return WHITESPACE;
+        else if (Character.isDigit(c))
+            return DIGIT;
+        else if (Character.isLetter(c))
+            return LETTER;
+        else
+            return ILLEGAL;
+    }
+
+    /**
+     * Returns whether the given character is whitespace
+     */
+    static boolean isWhitespace(char c)
+    {
+        return c < ASCII ? CHAR_CLASS[c] == WHITESPACE : Character.isWhitespace(c);
+    }
+
+    /**
+     * Returns whether the given character is a digit
+     */
+    static boolean isDigit(char c)
+    {
+        return c < ASCII ? CHAR_CLASS[c] == DIGIT : Character.isDigit(c);
+    }
+
+    /**
+     * Returns whether the given character can continue an identifier
+     */
+    static boolean isIdentifierPart(char c)
+    {
+        return c < ASCII ? IDENTIFIER_PART[c] : Character.isLetter(c) || Character.isDigit(c);
+    }
+
+    /**
+     * Returns the state reached from the given operator state on the given char
+     */
+    static byte next(byte state, char c)
+    {
+        return c < ASCII ? TRANSITION[state][c] : NO_STATE;
+    }
+
+    /**
+     * Returns the kind of token an identifier with the given spelling is:
+     * BOOLEAN for the boolean constants, the reserved word's own kind for
+     * reserved words, and IDENTIFIER otherwise. The spelling is hashed into
+     * a table of the special words, so at most one word is compared, and
+     * nothing is allocated.
+     *
+     * @param spelling the chars of the identifier
+     * @return the kind of the token
+     */
+    static Token.Kind identifierKind(CharSequence spelling)
+    {
+        int length = spelling.length();
+        if (length < 2)
+            return Token.Kind.IDENTIFIER;
+
+        int slot = perfectHash(spelling.charAt(0), spelling.charAt(length - 1), length);
+        String word = HASHED_WORDS[slot];
+        if (word != null && word.length() == length && contentEquals(word, spelling))
+            return HASHED_KINDS[slot];
+        return Token.Kind.IDENTIFIER;
+    }
+
+    /**
+     * A hash of an identifier's first char, last char and length that
+     * has no collisions among the special words
+     */
+    private static int perfectHash(char first, char last, int length)
+    {
+        return (first + 7 * last + length) & (HASH_SIZE - 1);
+    }
+
+    private static boolean contentEquals(String word, CharSequence chars)
+    {
+        for (int i = 0; i < word.length(); i++)
+            if (word.charAt(i) != chars.charAt(i))
+                return false;
+        return true;
+    }
+}
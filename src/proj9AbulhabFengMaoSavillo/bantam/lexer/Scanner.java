@@ -13,8 +13,15 @@ import proj9AbulhabFengMaoSavillo.bantam.util.*;
 import proj9AbulhabFengMaoSavillo.bantam.util.Error;
 
 import java.io.Reader;
-import java.util.ArrayDeque;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The Scanner class reads in a stream of characters from a file
@@ -28,11 +35,64 @@ import java.util.List;
  */
 public class Scanner
 {
+    /**
+     * The ways the Scanner can recognize tokens. Both produce identical token streams.
+     */
+    public enum Engine
+    {
+        SWITCH, // a chain of switch statements over the current char
+        TABLE   // precomputed character class and operator transition tables
+    }
+
+    /**
+     * What the Scanner produces for each token, so callers pay only for what they use
+     */
+    public enum Mode
+    {
+        FULL,          // every token, with its spelling
+        SKIP_TRIVIA,   // every token but comments, which are consumed without being copied
+        POSITIONS_ONLY // every token, with its kind, position and span but no spelling
+    }
+
+    /**
+     * Receives how far a scan has got
+     */
+    public interface ProgressListener
+    {
+        /**
+         * Called every so many chars while scanning, and at the end
+         *
+         * @param consumed the number of chars scanned so far
+         * @param total    about how many chars the source has, or -1 if that is not known
+         */
+        void progress(long consumed, long total);
+    }
+
+    private static final int NO_LOOKAHEAD = -1;
+    private static final int CHECKPOINT_INTERVAL = 64 * 1024; // in chars
+    private static final int AVERAGE_TOKEN_LENGTH = 6; // in chars, counting the whitespace after it
+    private static final int MAX_STRING_LENGTH = 5000;
+
     private SourceFile sourceFile;
     private ErrorHandler errorHandler;
+    private Engine engine;
+    private Mode mode;
+    private SymbolTable symbolTable;
+    private CancellationToken cancellationToken;
+    private ProgressListener progressListener;
+    private long nextCheckpoint; // the offset at which to check for cancellation and report progress next
 
     private char currentChar;
-    private ArrayDeque<Character> buffer; // for when another token is found too early.
+    private int lookahead; // for when another token is found too early.
+
+    private final StringBuilder spelling; // the token being built, reused for every token
+    private int tokenPosition;            // the line number reported for the token being built
+    private long tokenStart;              // the offset of the first char of the token being built
+    private int tokenLine;                // the line of the first char of the token being built
+    private int tokenColumn;              // the column of the first char of the token being built
+    private int spellingPastEnd;          // eof chars in the spelling that are not in the source text
+    private boolean keepSpelling;         // false if the caller only needs the token's span, not its spelling
+    private boolean tokenIsComment;       // true if the token being built is a comment, terminated or not
 
     /**
      * Creates a new Scanner that registers errors to the given ErrorHandler
@@ -43,7 +103,11 @@ public class Scanner
         this.errorHandler = handler;
         this.currentChar = ' ';
         this.sourceFile = null;
-        this.buffer = new ArrayDeque<Character>();
+        this.lookahead = NO_LOOKAHEAD;
+        this.engine = Engine.SWITCH;
+        this.mode = Mode.FULL;
+        this.spelling = new StringBuilder();
+        this.symbolTable = new SymbolTable();
     }
 
     /**
@@ -54,10 +118,8 @@ public class Scanner
      */
     public Scanner(String filename, ErrorHandler handler)
     {
-        this.errorHandler = handler;
-        this.currentChar = ' ';
+        this(handler);
         this.sourceFile = new SourceFile(filename);
-        this.buffer = new ArrayDeque<Character>();
     }
 
     /**
@@ -68,16 +130,65 @@ public class Scanner
      */
     public Scanner(Reader reader, ErrorHandler handler)
     {
-        this.errorHandler = handler;
-        this.currentChar = ' ';
+        this(handler);
         this.sourceFile = new SourceFile(reader);
-        this.buffer = new ArrayDeque<Character>();
     }
     
+    /**
+     * Creates a new Scanner that lexes the given text, such as the contents of
+     * an editor, into tokens and registers errors to the given ErrorHandler.
+     * The text is read a block at a time and never copied whole.
+     * @param text the text to scan, which must not change while it is scanned
+     * @param filename name of the file the text belongs to, for error messages
+     * @param handler ErrorHandler to register to
+     */
+    public Scanner(CharSequence text, String filename, ErrorHandler handler)
+    {
+        this(handler);
+        this.sourceFile = new SourceFile(text, filename, 0, 1);
+    }
+
+    /**
+     * Creates a new Scanner that lexes the given SourceFile into tokens
+     * and registers errors to the given ErrorHandler
+     * @param sourceFile the source to read characters from
+     * @param handler ErrorHandler to register to
+     */
+    Scanner(SourceFile sourceFile, ErrorHandler handler)
+    {
+        this(handler);
+        this.sourceFile = sourceFile;
+    }
+
+    /**
+     * Sets the engine used to recognize tokens
+     * @param engine the engine to use from the next call to scan()
+     */
+    public void setEngine(Engine engine)
+    {
+        this.engine = engine;
+    }
+
+    /**
+     * Sets what is produced for each token. In SKIP_TRIVIA mode comments are
+     * skipped by every method that scans, unterminated ones included, though
+     * their errors are still registered; in POSITIONS_ONLY mode scan() gives
+     * Tokens whose spelling is null and whose identifiers are not interned.
+     * @param mode the mode to use from the next call that scans
+     */
+    public void setMode(Mode mode)
+    {
+        this.mode = mode;
+    }
+
     /**
      * Test code for Scanner methods
      * To test, run Scanner with one or more command-line arguments listing
-     * files to scan.
+     * files to scan, optionally preceded by -engine=switch or -engine=table,
+     * by -mode=full, -mode=skip_trivia or -mode=positions_only, or by -cache
+     * or -cache=directory to take the tokens of files scanned before from a
+     * TokenCache. The cache always scans with the default engine and mode, so
+     * -cache cannot be combined with -engine or -mode.
      */
     public static void main(String[] args)
     {
@@ -88,21 +199,62 @@ public class Scanner
             System.exit(-1);
         }
 
+        //choose the scanning engine and whether to use a cache
+        Engine engine = Engine.SWITCH;
+        Mode mode = Mode.FULL;
+        TokenCache cache = null;
+        boolean engineOrModeGiven = false;
+        int firstFile = 0;
+        for (; firstFile < args.length && args[firstFile].startsWith("-"); firstFile++)
+        {
+            String option = args[firstFile];
+            if (option.startsWith("-engine="))
+            {
+                engine = Engine.valueOf(option.substring("-engine=".length()).toUpperCase());
+                engineOrModeGiven = true;
+            }
+            else if (option.startsWith("-mode="))
+            {
+                mode = Mode.valueOf(option.substring("-mode=".length()).toUpperCase());
+                engineOrModeGiven = true;
+            }
+            else if (option.equals("-cache"))
+                cache = TokenCache.getDefault();
+            else if (option.startsWith("-cache="))
+                cache = new TokenCache(Paths.get(option.substring("-cache=".length())),
+                                       TokenCache.DEFAULT_MAX_BYTES);
+            else
+                break;
+        }
+
+        //the cache does not key its tokens by engine or mode
+        if (cache != null && engineOrModeGiven)
+        {
+            System.err.println("The -cache option cannot be combined with -engine or -mode");
+            System.exit(-1);
+        }
+
         //for each file given, scan
         ErrorHandler errorHandler = new ErrorHandler();
-        for (String filename : args)
+        for (String filename : Arrays.copyOfRange(args, firstFile, args.length))
         {
             System.out.println("Scanning file: " + filename + "\n");
 
             //scan tokens
             try
             {
-                Scanner scanner = new Scanner(filename, errorHandler);
-                Token currentToken = scanner.scan();
-                while (currentToken.kind != Token.Kind.EOF)
+                if (cache != null)
+                {
+                    TokenBuffer tokens = cache.scan(filename, errorHandler);
+                    for (int i = 0; i < tokens.size(); i++)
+                        System.out.println(tokens.getToken(i));
+                }
+                else
                 {
-                    System.out.println(currentToken);
-                    currentToken = scanner.scan();
+                    Scanner scanner = new Scanner(filename, errorHandler);
+                    scanner.setEngine(engine);
+                    scanner.setMode(mode);
+                    scanner.stream().forEach(System.out::println);
                 }
             }
             catch (CompilationException e)
@@ -136,21 +288,333 @@ public class Scanner
      */
     public Token scan()
     {
-        if (this.currentChar == SourceFile.eof)
-            return new Token(Token.Kind.EOF,
-                             Character.toString(SourceFile.eof),
-                             this.sourceFile.getCurrentLineNumber());
+        this.keepSpelling = this.mode == Mode.FULL;
+        Token.Kind kind = this.lex();
+
+        if (this.mode == Mode.POSITIONS_ONLY)
+            return new Token(kind, null, this.tokenPosition,
+                             this.tokenStart, this.getTokenEnd(),
+                             this.tokenLine, this.tokenColumn, SymbolTable.NO_SYMBOL);
+
+        //identifiers share the String of their name in the symbol table
+        String spelling;
+        int symbol = SymbolTable.NO_SYMBOL;
+        if (kind == Token.Kind.IDENTIFIER)
+        {
+            symbol = this.symbolTable.intern(this.spelling);
+            spelling = this.symbolTable.getName(symbol);
+        }
+        else
+        {
+            spelling = this.spelling.toString();
+        }
+
+        return new Token(kind, spelling, this.tokenPosition,
+                         this.tokenStart, this.getTokenEnd(),
+                         this.tokenLine, this.tokenColumn, symbol);
+    }
+
+    /**
+     * Returns the table the names of the identifiers scanned so far are interned in
+     *
+     * @return the symbol table
+     */
+    public SymbolTable getSymbolTable()
+    {
+        return this.symbolTable;
+    }
+
+    /**
+     * Sets the table to intern the names of identifiers in, so that
+     * several scanners can give the same name the same id
+     *
+     * @param symbolTable the symbol table
+     */
+    public void setSymbolTable(SymbolTable symbolTable)
+    {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Sets the token that cancels this scan. It is checked about every 64K
+     * chars, inside comments and strings as well as between tokens; once it is
+     * cancelled, the scan throws a CancellationException.
+     *
+     * @param cancellationToken the token to check, or null to never cancel
+     */
+    public void setCancellationToken(CancellationToken cancellationToken)
+    {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Sets the listener told how many chars have been scanned, at the same
+     * points the cancellation token is checked and when EOF is reached
+     *
+     * @param progressListener the listener, or null for none
+     */
+    public void setProgressListener(ProgressListener progressListener)
+    {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Returns an iterator over the remaining tokens, not including EOF.
+     * Tokens are scanned as the iterator is advanced, so it should not be
+     * mixed with other calls that scan.
+     *
+     * @return an iterator over the tokens
+     */
+    public Iterator<Token> iterator()
+    {
+        return Spliterators.iterator(this.spliterator());
+    }
+
+    /**
+     * Returns a spliterator over the remaining tokens, not including EOF,
+     * that estimates how many there are from the size of the source.
+     * Tokens are scanned as the spliterator is advanced.
+     *
+     * @return a spliterator over the tokens
+     */
+    public Spliterator<Token> spliterator()
+    {
+        return new TokenSpliterator();
+    }
+
+    /**
+     * Returns a sequential stream of the remaining tokens, not including EOF.
+     * Tokens are scanned as the stream pulls them, so counting, filtering and
+     * the like need not collect them in a list first.
+     *
+     * @return a stream of the tokens
+     */
+    public Stream<Token> stream()
+    {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    /**
+     * Scans all remaining tokens up to EOF into a TokenBuffer. No Token objects
+     * or spellings are created while scanning; the buffer builds them on request
+     * from the text of the source, interning names in this scanner's
+     * SymbolTable, so its identifiers get the ids scan() would give them.
+     * Must be called before the scanner has read far into a large source.
+     *
+     * @return the buffer holding the scanned tokens, not including EOF
+     */
+    public TokenBuffer scanToBuffer()
+    {
+        TokenBuffer tokens = new TokenBuffer(this.sourceFile.getText());
+        tokens.setSymbolTable(this.symbolTable);
+        while (this.scanInto(tokens) != Token.Kind.EOF) { }
+        return tokens;
+    }
+
+    /**
+     * Scans all remaining tokens up to EOF into a TokenRing, for a consumer
+     * on another thread to drain as they come, without keeping the text of
+     * the source: the ring's getText() returns null, and the consumer works
+     * from the offsets alone.
+     *
+     * @param ring the ring to add the tokens to, which this thread is the producer of
+     */
+    public void scanToRing(TokenRing ring)
+    {
+        this.scanToRing(ring, false);
+    }
+
+    /**
+     * Scans all remaining tokens up to EOF into a TokenRing, for a consumer
+     * on another thread to drain as they come. The ring is closed at EOF,
+     * or failed with the exception that stopped the scan. If the text is
+     * kept, a source read in blocks is held whole on the heap, and this must
+     * be called before the scanner has read far into it.
+     *
+     * @param ring     the ring to add the tokens to, which this thread is the producer of
+     * @param keepText whether the ring's getText() should return the text, for spellings
+     */
+    public void scanToRing(TokenRing ring, boolean keepText)
+    {
+        try
+        {
+            if (keepText)
+                ring.setText(this.sourceFile.getText());
+            this.keepSpelling = false;
+            Token.Kind kind;
+            while ((kind = this.lex()) != Token.Kind.EOF)
+                ring.add(kind, this.tokenStart, this.getTokenEnd(), this.tokenPosition);
+            ring.close();
+        }
+        catch (RuntimeException | java.lang.Error e)
+        {
+            //without this the consumer would wait forever for the next token
+            ring.fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Scans all remaining tokens up to EOF into an OffHeapTokenStore. Unlike
+     * scanToBuffer(), the text of the source is not kept, so a source of many
+     * gigabytes can be scanned without holding it or its tokens on the heap.
+     *
+     * @param store the store to add the tokens to, which this thread is the writer of
+     */
+    public void scanToStore(OffHeapTokenStore store)
+    {
+        this.keepSpelling = false;
+        Token.Kind kind;
+        while ((kind = this.lex()) != Token.Kind.EOF)
+            store.add(kind, this.tokenStart, this.getTokenEnd(), this.tokenPosition, this.spellingPastEnd);
+    }
+
+    /**
+     * Scans the next token and appends it to the given buffer, unless it is EOF
+     *
+     * @param tokens the buffer to append to
+     * @return the kind of the token scanned
+     */
+    Token.Kind scanInto(TokenBuffer tokens)
+    {
+        //the buffer takes spellings from the source text, so comments need not be copied
+        this.keepSpelling = false;
+        Token.Kind kind = this.lex();
+        if (kind != Token.Kind.EOF)
+            tokens.add(kind, this.tokenStart, this.getTokenEnd(), this.tokenPosition, this.spellingPastEnd);
+        return kind;
+    }
+
+    /**
+     * Returns the offset of the first char of the token scanned last; for
+     * EOF, where scanning stopped: the end of the source, or an eof char in it
+     */
+    long getTokenStart()
+    {
+        return this.tokenStart;
+    }
+
+    /**
+     * Recognizes the next token without building a Token for it
+     *
+     * @return the kind of the next token, or EOF if has already reached EOF
+     */
+    Token.Kind scanKind()
+    {
+        this.keepSpelling = false;
+        return this.lex();
+    }
 
+    /**
+     * Recognizes the next token, passing over comments in SKIP_TRIVIA mode,
+     * along with the error token of an unterminated one, whose error is still registered.
+     * Its spelling is left in the spelling builder, unless it is a comment and
+     * keepSpelling is false, and its position and start offset in the token fields.
+     *
+     * @return the kind of the next token, or EOF if has already reached EOF
+     */
+    private Token.Kind lex()
+    {
+        Token.Kind kind;
+        do
+        {
+            this.pollCheckpoint();
+
+            if (this.currentChar == SourceFile.eof)
+            {
+                this.beginToken();
+                kind = Token.Kind.EOF;
+            }
+            else if (this.engine == Engine.TABLE)
+                kind = this.scanWithTables();
+            else
+                kind = this.scanWithSwitches();
+        } while (this.tokenIsComment && this.mode == Mode.SKIP_TRIVIA);
+
+        if (kind == Token.Kind.EOF && this.progressListener != null)
+            this.progressListener.progress(this.sourceFile.getOffset(), this.sourceFile.getLengthHint());
+        return kind;
+    }
+
+    /**
+     * Calls checkpoint() if the scan has passed the offset set for it. Called
+     * between tokens and on each pass of the loops of comments and strings,
+     * which skip at most one block of chars at a time, so that a huge
+     * unterminated comment can be cancelled too.
+     */
+    private void pollCheckpoint()
+    {
+        if (this.sourceFile.getOffset() >= this.nextCheckpoint)
+            this.checkpoint();
+    }
+
+    /**
+     * Checks for cancellation and reports progress, then sets the offset at
+     * which to do so again
+     */
+    private void checkpoint()
+    {
+        long offset = this.sourceFile.getOffset();
+        this.nextCheckpoint = offset + CHECKPOINT_INTERVAL;
+        if (this.cancellationToken != null)
+            this.cancellationToken.throwIfCancelled();
+        if (this.progressListener != null)
+            this.progressListener.progress(offset, this.sourceFile.getLengthHint());
+    }
+
+    /**
+     * Starts a new token at the current char: resets the spelling to hold just that char
+     * and records the token's position, start offset, line and column.
+     *
+     * @return the line number of the current char
+     */
+    private int beginToken()
+    {
+        this.spelling.setLength(0);
+        this.spelling.append(this.currentChar);
+        this.spellingPastEnd = 0;
+        this.tokenIsComment = false;
+        this.tokenPosition = this.sourceFile.getCurrentLineNumber();
+
+        //the current char was the last one read, unless the end of the source was reached
+        this.tokenStart = this.sourceFile.getOffset();
+        if (!this.sourceFile.isAtEnd())
+            this.tokenStart--;
+        this.tokenLine = this.tokenPosition;
+        this.tokenColumn = this.sourceFile.getColumn(this.tokenStart);
+
+        return this.tokenPosition;
+    }
+
+    /**
+     * Returns the offset just past the last char of the token just built
+     */
+    private long getTokenEnd()
+    {
+        //a lookahead char has been read but is not part of the token
+        if (this.lookahead != NO_LOOKAHEAD && !this.sourceFile.isAtEnd())
+            return this.sourceFile.getOffset() - 1;
+        else
+            return this.sourceFile.getOffset();
+    }
+
+    /**
+     * Recognizes the next token by running the current char through a chain of switch statements
+     *
+     * @return the kind of the next token
+     */
+    private Token.Kind scanWithSwitches()
+    {
         Token.Kind kind = null;
-        StringBuilder spelling = new StringBuilder();
         int lineNumber;
 
         boolean isTokenComplete = true; // start as true, and set to false if not a single char token
 
-        Character c = ' ';
-        if (!this.buffer.isEmpty())
+        char c = ' ';
+        if (this.lookahead != NO_LOOKAHEAD)
         {
-            c = this.buffer.poll();
+            c = (char) this.lookahead;
+            this.lookahead = NO_LOOKAHEAD;
         }
 
         // Set first char to that caught in the buffer, if there was one. Else nextChar.
@@ -160,12 +624,15 @@ public class Scanner
         }
         else
         {
-            do { this.currentChar = this.sourceFile.getNextChar(); }
+            do
+            {
+                this.sourceFile.skipBlanks();
+                this.currentChar = this.sourceFile.getNextChar();
+            }
             while (Character.isWhitespace(this.currentChar));
         }
 
-        spelling.append(this.currentChar);
-        lineNumber = this.sourceFile.getCurrentLineNumber();
+        lineNumber = this.beginToken();
 
         //check for single-char tokens that can be identified at once
         switch (this.currentChar)
@@ -223,7 +690,7 @@ public class Scanner
         }
 
         if (isTokenComplete)
-            return new Token(kind, spelling.toString(), lineNumber);
+            return kind;
 
         isTokenComplete = true; // set to true, and set to false if fails next check
 
@@ -243,11 +710,11 @@ public class Scanner
                                                lineNumber,
                                                "Badly formed binary logic operator: &");
                     //has read in start of next token, so store in buffer
-                    this.buffer.add(this.currentChar);
+                    this.lookahead = this.currentChar;
                 }
                 else
                 {
-                    spelling.append(this.currentChar);
+                    this.spelling.append(this.currentChar);
                 }
                 break;
             case '|':
@@ -263,11 +730,11 @@ public class Scanner
                                                lineNumber,
                                                "Badly formed binary logic operator: |");
                     //has read in start of next token, so store in buffer
-                    this.buffer.add(this.currentChar);
+                    this.lookahead = this.currentChar;
                 }
                 else
                 {
-                    spelling.append(this.currentChar);
+                    this.spelling.append(this.currentChar);
                 }
                 break;
             case '\"':
@@ -280,7 +747,7 @@ public class Scanner
         }
 
         if (isTokenComplete)
-            return new Token(kind, spelling.toString(), lineNumber);
+            return kind;
 
         isTokenComplete = true;  // set to true, and set to false if fails next check
 
@@ -288,13 +755,13 @@ public class Scanner
         if (Character.isDigit(this.currentChar))
         {
             kind = Token.Kind.INTCONST;
-            return this.completeIntconstToken(lineNumber);
+            return this.completeIntconstToken();
         }
         //identifier/boolean/keyword
         else if (Character.isLetter(this.currentChar))
         {
             kind = Token.Kind.IDENTIFIER;
-            return this.completeIdentifierToken(lineNumber);
+            return this.completeIdentifierToken();
         }
 
         switch (this.currentChar)
@@ -303,28 +770,28 @@ public class Scanner
                 this.currentChar = this.sourceFile.getNextChar();
                 if (this.currentChar == '+') //check whether has second +
                 {
-                    spelling.append(this.currentChar);
+                    this.spelling.append(this.currentChar);
                     kind = Token.Kind.UNARYINCR;
                 }
                 else
                 {
                     kind = Token.Kind.PLUSMINUS;
                     //has read in start of next token, so store in buffer
-                    this.buffer.add(this.currentChar);
+                    this.lookahead = this.currentChar;
                 }
                 break;
             case '-': //token can be - or --
                 this.currentChar = this.sourceFile.getNextChar();
                 if (this.currentChar == '-') //check whether has second -
                 {
-                    spelling.append(this.currentChar);
+                    this.spelling.append(this.currentChar);
                     kind = Token.Kind.UNARYDECR;
                 }
                 else
                 {
                     kind = Token.Kind.PLUSMINUS;
                     //has read in start of next token, so store in buffer
-                    this.buffer.add(this.currentChar);
+                    this.lookahead = this.currentChar;
                 }
                 break;
             case '<': //token can be < or <=
@@ -334,12 +801,12 @@ public class Scanner
                 this.currentChar = this.sourceFile.getNextChar();
                 if (this.currentChar == '=')
                 {
-                    spelling.append(this.currentChar);
+                    this.spelling.append(this.currentChar);
                 }
                 else
                 {
                     //has read in start of next token, so store in buffer
-                    this.buffer.add(this.currentChar);
+                    this.lookahead = this.currentChar;
                 }
 
                 break;
@@ -350,12 +817,12 @@ public class Scanner
                 this.currentChar = this.sourceFile.getNextChar();
                 if (this.currentChar == '=')
                 {
-                    spelling.append(this.currentChar);
+                    this.spelling.append(this.currentChar);
                 }
                 else
                 {
                     //has read in start of next token, so store in buffer
-                    this.buffer.add(this.currentChar);
+                    this.lookahead = this.currentChar;
                 }
                 break;
             case '=': //token can be = or ==
@@ -363,14 +830,14 @@ public class Scanner
                 this.currentChar = this.sourceFile.getNextChar();
                 if (this.currentChar == '=')
                 {
-                    spelling.append(this.currentChar);
+                    this.spelling.append(this.currentChar);
                     kind = Token.Kind.COMPARE;
                 }
                 else //otherwise, is just assignment operator
                 {
                     kind = Token.Kind.ASSIGN;
                     //has read in start of next token, so store in buffer
-                    this.buffer.add(this.currentChar);
+                    this.lookahead = this.currentChar;
                 }
                 break;
             case '/': //token can be / or a comment
@@ -379,18 +846,18 @@ public class Scanner
                 if (this.currentChar == '*') //block comment
                 {
                     kind = Token.Kind.COMMENT;
-                    return this.completeBlockCommentToken(lineNumber);
+                    return this.completeBlockCommentToken();
                 }
                 else if (this.currentChar == '/') //single-line comment
                 {
                     kind = Token.Kind.COMMENT;
-                    return this.completeLineCommentToken(lineNumber);
+                    return this.completeLineCommentToken();
                 }
                 else
                 {
                     kind = Token.Kind.MULDIV;
                     //has read in start of next token, so store in buffer
-                    this.buffer.add(this.currentChar);
+                    this.lookahead = this.currentChar;
                 }
 
                 break;
@@ -400,44 +867,140 @@ public class Scanner
         }
 
         if (isTokenComplete)
-            return new Token(kind, spelling.toString(), lineNumber);
+            return kind;
         else //if first char doesn't match any of above cases, is illegal char
         {
             this.errorHandler.register(Error.Kind.LEX_ERROR,
                                        this.sourceFile.getFilename(),
                                        lineNumber,
                                        "Unexpected character: " + this.currentChar);
-            return new Token(Token.Kind.ERROR, spelling.toString(), lineNumber);
+            return Token.Kind.ERROR;
         }
     }
 
     /**
-     * Builds and returns a string token starting from the current character
+     * Recognizes the next token by looking up the class of the current char
+     * and running operators through the transition table
      *
-     * @return the string token, or error token if error encountered
+     * @return the kind of the next token
      */
-    private Token completeStringToken()
+    private Token.Kind scanWithTables()
     {
-        //init string with opening " because scan method already read it in
-        StringBuilder spellingBuilder = new StringBuilder("\"");
+        // Start from the lookahead char if it is not whitespace, else skip to the next char that is not
+        if (this.lookahead != NO_LOOKAHEAD && !ScanTables.isWhitespace((char) this.lookahead))
+        {
+            this.currentChar = (char) this.lookahead;
+        }
+        else
+        {
+            do
+            {
+                this.sourceFile.skipBlanks();
+                this.currentChar = this.sourceFile.getNextChar();
+            }
+            while (ScanTables.isWhitespace(this.currentChar));
+        }
+        this.lookahead = NO_LOOKAHEAD;
+
+        int lineNumber = this.beginToken();
+        char c = this.currentChar;
+
+        switch (ScanTables.classOf(c))
+        {
+            case ScanTables.SINGLE:
+                return ScanTables.SINGLE_KIND[c];
+            case ScanTables.END:
+                return Token.Kind.EOF;
+            case ScanTables.DIGIT:
+                return this.completeIntconstToken();
+            case ScanTables.LETTER:
+                return this.completeIdentifierToken();
+            case ScanTables.QUOTE:
+                this.currentChar = this.sourceFile.getNextChar();
+                return this.completeStringToken();
+            case ScanTables.OPERATOR:
+                return this.completeOperatorToken(lineNumber);
+            default:
+                this.errorHandler.register(Error.Kind.LEX_ERROR,
+                                           this.sourceFile.getFilename(),
+                                           lineNumber,
+                                           "Unexpected character: " + c);
+                return Token.Kind.ERROR;
+        }
+    }
+
+    /**
+     * Completes an operator or comment token starting from the current char
+     * by following the operator transition table
+     *
+     * @param lineNumber starting line number of token
+     * @return the kind of the operator or comment token, or error if error encountered
+     */
+    private Token.Kind completeOperatorToken(int lineNumber)
+    {
+        char first = this.currentChar;
+        byte state = ScanTables.next(ScanTables.START, first);
+
+        this.currentChar = this.sourceFile.getNextChar();
+        byte nextState = ScanTables.next(state, this.currentChar);
+
+        switch (nextState)
+        {
+            case ScanTables.NO_STATE:
+                //has read in start of next token, so store it as the lookahead
+                this.lookahead = this.currentChar;
+                Token.Kind kind = ScanTables.ACCEPT_KIND[state];
+                if (kind == Token.Kind.ERROR)
+                {
+                    this.errorHandler.register(Error.Kind.LEX_ERROR,
+                                               this.sourceFile.getFilename(),
+                                               lineNumber,
+                                               "Badly formed binary logic operator: " + first);
+                }
+                return kind;
+            case ScanTables.BLOCK_COMMENT:
+                return this.completeBlockCommentToken();
+            case ScanTables.LINE_COMMENT:
+                return this.completeLineCommentToken();
+            default:
+                this.spelling.append(this.currentChar);
+                return ScanTables.ACCEPT_KIND[nextState];
+        }
+    }
+
+    /**
+     * Completes a string token starting from the current character
+     *
+     * @return the kind of the string token, or error if error encountered
+     */
+    private Token.Kind completeStringToken()
+    {
+        //the spelling already holds the opening " because scan method already read it
         Token.Kind kind = Token.Kind.STRCONST;
 
         //collect chars until closing double quote
         while (this.currentChar != '\"')
         {
-            spellingBuilder.append(Character.toString(this.currentChar));
+            this.pollCheckpoint();
+            this.appendCurrentChar();
+
+            //copy the chars that need no checks but the length check in bulk,
+            //stopping where the length check could first fail
+            this.sourceFile.skipUntil('"', '\\',
+                                      Math.max(0, MAX_STRING_LENGTH + 1 - this.spelling.length()),
+                                      this.spelling);
             this.currentChar = this.sourceFile.getNextChar();
 
             //check for escaped chars
             if (this.currentChar == '\\')
             {
-                spellingBuilder.append(Character.toString(this.currentChar));
+                this.appendCurrentChar();
                 this.currentChar = this.sourceFile.getNextChar();
 
                 //handle having escaped quote \"
                 if (this.currentChar == '"')
                 {
-                    spellingBuilder.append(Character.toString(this.currentChar));
+                    this.appendCurrentChar();
                     this.currentChar = this.sourceFile.getNextChar();
                 }
 
@@ -467,7 +1030,7 @@ public class Scanner
             }
 
             //check if too long
-            if (spellingBuilder.length() > 5000)
+            if (this.spelling.length() > MAX_STRING_LENGTH)
             {
                 this.errorHandler.register(Error.Kind.LEX_ERROR,
                                            this.sourceFile.getFilename(),
@@ -479,37 +1042,55 @@ public class Scanner
         }
 
         //append closing quote
-        spellingBuilder.append(Character.toString(this.currentChar));
+        this.appendCurrentChar();
 
-        return new Token(kind, spellingBuilder.toString(), this.sourceFile.getCurrentLineNumber());
+        this.tokenPosition = this.sourceFile.getCurrentLineNumber();
+        return kind;
     }
 
     /**
-     * Builds and returns a block comment token starting from the current char
-     * with position at the given line number
+     * Appends the current char to the spelling, counting the eof chars
+     * that stand for the end of the source rather than a char in it
+     */
+    private void appendCurrentChar()
+    {
+        this.spelling.append(this.currentChar);
+        if (this.currentChar == SourceFile.eof && this.sourceFile.isAtEnd())
+            this.spellingPastEnd++;
+    }
+
+    /**
+     * Completes a block comment token starting from the current char
      *
-     * @param lineNumber starting line number of token
-     * @return the block comment token, or error token if error encountered
+     * @return the kind of the block comment token, or error if error encountered
      */
-    private Token completeBlockCommentToken(int lineNumber)
+    private Token.Kind completeBlockCommentToken()
     {
-        //init string with starting / because scan read it
-        StringBuilder spellingBuilder = new StringBuilder("/");
+        //the spelling already holds the starting / because scan read it
         Token.Kind kind = Token.Kind.COMMENT;
+        this.tokenIsComment = true;
 
         boolean atTentativeEnd = false; // a '*' has been seen
         boolean terminated = false; // a '*' and '/' have been seen in sequence
+        StringBuilder copy = this.keepSpelling ? this.spelling : null;
 
         while (!terminated && this.currentChar != SourceFile.eof)
         {
-            spellingBuilder.append(this.currentChar);
+            this.pollCheckpoint();
+            if (copy != null)
+                copy.append(this.currentChar);
+
+            //unless a '*' was just seen, only a '*' or eof can change the state, so skip to one
+            if (!atTentativeEnd)
+                this.sourceFile.skipUntil('*', '*', Integer.MAX_VALUE, copy);
             this.currentChar = this.sourceFile.getNextChar();
 
             if (atTentativeEnd) // if '*' has been seen
             {
                 if (this.currentChar == '/')    // block comment indeed terminated
                 {
-                    spellingBuilder.append(this.currentChar);
+                    if (copy != null)
+                        copy.append(this.currentChar);
                     terminated = true;
                 }
                 else                            // otherwise just a '*' in the middle somewhere
@@ -529,71 +1110,64 @@ public class Scanner
                                        this.sourceFile.getCurrentLineNumber(),
                                        "Block comment not terminated");
             kind = Token.Kind.ERROR;
+
+            //an eof char in the middle of the source is not part of the comment
+            if (!this.sourceFile.isAtEnd())
+                this.lookahead = this.currentChar;
         }
 
-        return new Token(kind, spellingBuilder.toString(), lineNumber);
+        return kind;
     }
 
     /**
-     * Builds and returns a single-line comment token starting from the current char
+     * Completes a single-line comment token starting from the current char
      *
-     * @param lineNumber starting line number of token
-     * @return the line comment token
+     * @return the kind of the line comment token
      */
-    private Token completeLineCommentToken(int lineNumber)
+    private Token.Kind completeLineCommentToken()
     {
-        //init string with starting / because scan already read it in
-        StringBuilder spellingBuilder = new StringBuilder("/");
+        //the spelling already holds the starting / because scan already read it in
+        this.tokenIsComment = true;
 
-        //collect chars until end of line or file
+        //collect chars until end of line or file, skipping in bulk to the next line break
+        StringBuilder copy = this.keepSpelling ? this.spelling : null;
         while (this.currentChar != '\n' && this.currentChar != SourceFile.eof)
         {
-            spellingBuilder.append(this.currentChar);
+            this.pollCheckpoint();
+            if (copy != null)
+                copy.append(this.currentChar);
+            this.sourceFile.skipUntil('\n', '\n', Integer.MAX_VALUE, copy);
             this.currentChar = this.sourceFile.getNextChar();
         }
 
-        this.buffer.add(this.currentChar);
+        this.lookahead = this.currentChar;
 
-        return new Token(Token.Kind.COMMENT, spellingBuilder.toString(), lineNumber);
+        return Token.Kind.COMMENT;
     }
 
     /**
-     * Builds and returns an intconst token starting from the current char
+     * Completes an intconst token starting from the current char
      * Returns upon reading in any non-digit char
      *
-     * @param lineNumber starting line number of token
-     * @return the intconst token, or error token if error encountered
+     * @return the kind of the intconst token, or error if error encountered
      */
-    private Token completeIntconstToken(int lineNumber)
+    private Token.Kind completeIntconstToken()
     {
-        //start string with first digit read in by scan method
-        StringBuilder spellingBuilder = new StringBuilder();
+        //start spelling over with first digit read in by scan method
+        this.spelling.setLength(0);
         Token.Kind kind = Token.Kind.INTCONST;
 
         //collect chars until non-digit char
-        while (Character.isDigit(this.currentChar))
+        while (ScanTables.isDigit(this.currentChar))
         {
-            spellingBuilder.append(this.currentChar);
+            this.spelling.append(this.currentChar);
             this.currentChar = this.sourceFile.getNextChar();
         }
 
-        this.buffer.add(this.currentChar);
+        this.lookahead = this.currentChar;
 
         //check whether int is too long
-        try
-        {
-            int value = Integer.parseInt(spellingBuilder.toString());
-            if (value < 0)
-            {
-                this.errorHandler.register(Error.Kind.LEX_ERROR,
-                                           this.sourceFile.getFilename(),
-                                           this.sourceFile.getCurrentLineNumber(),
-                                           "Integer exceeds maximum value");
-                kind = Token.Kind.ERROR;
-
-            }
-        }
-        catch (NumberFormatException e)
+        if (!fitsInInt(this.spelling))
         {
             this.errorHandler.register(Error.Kind.LEX_ERROR,
                                        this.sourceFile.getFilename(),
@@ -602,33 +1176,51 @@ public class Scanner
             kind = Token.Kind.ERROR;
         }
 
-        return new Token(kind, spellingBuilder.toString(), lineNumber);
+        return kind;
+    }
+
+    /**
+     * Returns whether the given digits make a value that fits in an int,
+     * the way Integer.parseInt would decide, but without creating a String
+     *
+     * @param digits the digits of an intconst
+     * @return true if the value is at most Integer.MAX_VALUE
+     */
+    private static boolean fitsInInt(CharSequence digits)
+    {
+        int value = 0;
+        for (int i = 0; i < digits.length(); i++)
+        {
+            int digit = Character.digit(digits.charAt(i), 10);
+            if (value > (Integer.MAX_VALUE - digit) / 10)
+                return false;
+            value = value * 10 + digit;
+        }
+        return true;
     }
 
     /**
-     * Builds and returns an identifier token (or boolean or keyword)
+     * Completes an identifier token (or boolean or keyword)
      * starting from the current character
      * Returns upon reading in any non-identifier char
      *
-     * @param lineNumber starting line number of token
-     * @return the identifier token
+     * @return the kind of the identifier, boolean or keyword token
      */
-    private Token completeIdentifierToken(int lineNumber)
+    private Token.Kind completeIdentifierToken()
     {
-        StringBuilder spellingBuilder = new StringBuilder();
+        //start spelling over with first char read in by scan method
+        this.spelling.setLength(0);
 
         //collect chars until non-identifier char
-        while (Character.isLetter(this.currentChar) ||
-                Character.isDigit(this.currentChar) ||
-                this.currentChar == '_')
+        while (ScanTables.isIdentifierPart(this.currentChar))
         {
-            spellingBuilder.append(this.currentChar);
+            this.spelling.append(this.currentChar);
             this.currentChar = this.sourceFile.getNextChar();
         }
 
-        this.buffer.add(this.currentChar);
+        this.lookahead = this.currentChar;
 
-        return new Token(Token.Kind.IDENTIFIER, spellingBuilder.toString(), lineNumber);
+        return ScanTables.identifierKind(this.spelling);
     }
 
     /**
@@ -639,4 +1231,57 @@ public class Scanner
     {
         return this.errorHandler.getErrorList();
     }
+
+    /**
+     * A spliterator that scans a token each time it is advanced, until EOF
+     */
+    private class TokenSpliterator extends Spliterators.AbstractSpliterator<Token>
+    {
+        private boolean done;
+
+        private TokenSpliterator()
+        {
+            super(estimateRemainingTokens(), Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Token> action)
+        {
+            if (this.done)
+                return false;
+
+            Token token = scan();
+            if (token.kind == Token.Kind.EOF)
+            {
+                this.done = true;
+                return false;
+            }
+            action.accept(token);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Token> action)
+        {
+            if (this.done)
+                return;
+
+            for (Token token = scan(); token.kind != Token.Kind.EOF; token = scan())
+                action.accept(token);
+            this.done = true;
+        }
+    }
+
+    /**
+     * Estimates how many tokens are left from how much of the source is left
+     *
+     * @return the estimate, or Long.MAX_VALUE if the size of the source is unknown
+     */
+    private long estimateRemainingTokens()
+    {
+        long length = this.sourceFile.getLengthHint();
+        if (length < 0)
+            return Long.MAX_VALUE;
+        return Math.max(0, length - this.sourceFile.getOffset()) / AVERAGE_TOKEN_LENGTH + 1;
+    }
 }
\ No newline at end of file
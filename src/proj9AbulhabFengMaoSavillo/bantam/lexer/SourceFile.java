@@ -18,14 +18,25 @@ package proj9AbulhabFengMaoSavillo.bantam.lexer;
 
 import proj9AbulhabFengMaoSavillo.bantam.util.CompilationException;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 /**
  * A class for extracting the characters, one at a time, from a text file or an
  * InputStream.
+ * The characters are pulled from the underlying source in large blocks, so
+ * getNextChar() is an array access in the common case.
  */
 class SourceFile
 {
@@ -33,36 +44,154 @@ class SourceFile
     private static final char cr = '\r';  // carriage return character
     static final char eof = '\u0000';     // end of file character
 
-    private Reader sourceReader;   // the reader of the file
+    static final int BLOCK_SIZE = 1 << 16;       // chars per block read from a Reader or mapping
+    static final long MAP_THRESHOLD = 1L << 20;  // files larger than this are memory-mapped
+    static final long MAX_BUFFER_BYTES = Integer.MAX_VALUE; // the most bytes one array or mapping holds
+
+    /**
+     * The ways the characters of a source file can be brought into memory.
+     */
+    enum Backend
+    {
+        READER,  // block reads through a Reader
+        WHOLE,   // the whole file read and decoded at once
+        MAPPED;  // the file memory-mapped and decoded one block at a time
+
+        /**
+         * Picks the fastest backend for a file of the given size: small and medium
+         * files are read whole, very large files are mapped so that only one block
+         * of decoded characters is held in memory at a time, and files too large
+         * for one mapping are read through a Reader.
+         *
+         * @param size the size of the file in bytes
+         * @return the backend to use
+         */
+        static Backend forSize(long size) {
+            return size > MAP_THRESHOLD ? MAPPED.forFileOf(size) : WHOLE;
+        }
+
+        /**
+         * Returns the backend that reads a file of the given size in place of
+         * this one: files of more than 2G bytes fit neither in one array nor in
+         * one mapping, so they are read through a Reader.
+         *
+         * @param size the size of the file in bytes
+         * @return this backend, or READER if it cannot hold the file
+         */
+        Backend forFileOf(long size) {
+            return size > MAX_BUFFER_BYTES ? READER : this;
+        }
+    }
+
+    private Reader sourceReader;     // the reader of the file, for the READER backend
+    private CharSequence sourceText; // the text, for sources already in memory
+    private int sourceTextPos;       // index in sourceText of the next block
+    private ByteBuffer mappedBytes;  // the undecoded bytes, for the MAPPED backend
+    private ByteBuffer stagedBytes;  // heap copy of the next block of mappedBytes
+    private CharsetDecoder decoder;  // decodes stagedBytes block by block
+    private char[] buffer;           // the current block of characters
+    private int bufferPos;           // index of the next character in buffer
+    private int bufferLimit;         // number of valid characters in buffer
+    private long bufferOffset;       // offset in the source of buffer[0]
+    private boolean exhausted;       // true once the source has no more blocks
+    private boolean atEnd;           // true if the last getNextChar() hit the end of the source
+    private StringBuilder retained;  // the text read so far, once getText() has been called
+
     private int currentLineNumber; // for bantam.error messages
     private int prevChar;          // the previous character read
+    private long lineStart;        // offset of the first character of the current line
+    private long lengthHint = -1;  // about how many characters the source has, or -1 if unknown
     private String filename;       // the file currently being scanned.
 
     /**
-     * creates a new SourceFile object for the file with the given name
-     * Note:  You should always call isValid() to check that the SourceFile
-     * was set up properly before calling getNextChar().
+     * creates a new SourceFile object for the file with the given name,
+     * choosing the backend by the size of the file.
      *
      * @param filename the name of the file to be read.
      */
     SourceFile(String filename) {
-        try {
-            sourceReader = new FileReader(filename);
+        this(filename, Backend.forSize(new File(filename).length()));
+    }
+
+    /**
+     * creates a new SourceFile object for the file with the given name
+     * that reads it through the given backend.
+     *
+     * @param filename the name of the file to be read.
+     * @param backend  how the file is to be brought into memory
+     */
+    SourceFile(String filename, Backend backend) {
+        this.filename = filename;
+        lengthHint = new File(filename).length();
+        currentLineNumber = 1;
+        prevChar = -1;
+
+        if (backend.forFileOf(lengthHint) == Backend.READER) {
+            try {
+                sourceReader = new FileReader(filename);
+            } catch (FileNotFoundException e) {
+                throw new CompilationException("File " + filename + " not found.");
+            }
+            buffer = new char[BLOCK_SIZE];
+            return;
+        }
+
+        try (FileInputStream in = new FileInputStream(filename)) {
+            FileChannel channel = in.getChannel();
+            switch (backend) {
+                case WHOLE:
+                    ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+                    while (bytes.hasRemaining() && channel.read(bytes) >= 0) { }
+                    bytes.flip();
+                    CharBuffer chars = newDecoder().decode(bytes);
+                    buffer = chars.array();
+                    bufferLimit = chars.limit();
+                    exhausted = true;
+                    break;
+                default:
+                    // the mapping stays valid after the channel is closed
+                    mappedBytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    stagedBytes = ByteBuffer.allocate(BLOCK_SIZE);
+                    decoder = newDecoder();
+                    buffer = new char[BLOCK_SIZE];
+                    break;
+            }
         } catch (FileNotFoundException e) {
             throw new CompilationException("File " + filename + " not found.");
+        } catch (IOException e) {
+            throw new CompilationException("File " + filename + " could not be read.");
         }
-        currentLineNumber = 1;
-        prevChar = -1;
-        this.filename = filename;
     }
 
 
     SourceFile(Reader in) {
         sourceReader = in;
+        buffer = new char[BLOCK_SIZE];
         currentLineNumber = 1;
         prevChar = -1;
     }
 
+    /**
+     * creates a new SourceFile object for text already in memory, starting
+     * part way through it. The text is copied a block at a time as it is read.
+     *
+     * @param text       the text to be read
+     * @param filename   the name of the file the text belongs to, for error messages
+     * @param start      the offset of the first character to read, which must start a line
+     * @param lineNumber the line number of that character
+     */
+    SourceFile(CharSequence text, String filename, int start, int lineNumber) {
+        sourceText = text;
+        sourceTextPos = start;
+        bufferOffset = start;
+        lineStart = start;
+        lengthHint = text.length();
+        buffer = new char[Math.max(1, Math.min(BLOCK_SIZE, text.length() - start))];
+        currentLineNumber = lineNumber;
+        prevChar = -1;
+        this.filename = filename;
+    }
+
 
     int getCurrentLineNumber() {
         return currentLineNumber;
@@ -70,30 +199,235 @@ class SourceFile
 
     String getFilename() { return filename; }
 
+    /**
+     * Returns the column of the character at the given offset, which must be
+     * on the current line. Columns start at 1, like line numbers.
+     */
+    int getColumn(long offset) {
+        return (int) (offset - lineStart) + 1;
+    }
+
+    /**
+     * Returns the offset of the next character to be read, which is also the
+     * number of characters read so far.
+     */
+    long getOffset() {
+        return bufferOffset + bufferPos;
+    }
+
+    /**
+     * Returns about how many characters the source has in all, which for
+     * files is their size in bytes, or -1 if that is not known.
+     */
+    long getLengthHint() {
+        return lengthHint;
+    }
+
+    /**
+     * Returns true if the last call to getNextChar() returned eof because
+     * the end of the source was reached.
+     */
+    boolean isAtEnd() {
+        return atEnd;
+    }
+
+    /**
+     * Returns the whole text of the source, as far as it has been read.
+     * Files read whole are returned as they are; for sources read in blocks,
+     * the text is kept from this call on, so it must be called before
+     * the first block has been used up.
+     *
+     * @return the text of the source, which grows as more of it is read
+     */
+    CharSequence getText() {
+        if (sourceText != null) {
+            return sourceText;
+        }
+        if (exhausted && bufferOffset == 0) {
+            return CharBuffer.wrap(buffer, 0, bufferLimit);
+        }
+        if (retained == null) {
+            if (bufferOffset != 0) {
+                throw new IllegalStateException("The start of " + filename + " is no longer available.");
+            }
+            retained = new StringBuilder(BLOCK_SIZE);
+            retained.append(buffer, 0, bufferLimit);
+        }
+        return retained;
+    }
+
     /**
      * Finds and returns the next character in the source file.
-     * If the end of the file has been reached or an exception occurs,
-     * then an exception is thrown.
+     * If the end of the file has been reached, the eof character is returned.
+     * If an exception occurs while reading, then an exception is thrown.
      * If the character is the cr character or the eol char not preceded by the cr
-     * character, the current line number is also incremented.
+     * character, the current line number is also incremented. After any line break
+     * character, the current line is taken to start at the next character.
      *
      * @return the next character in the source file
      */
     char getNextChar(){
+        if (bufferPos == bufferLimit && !fillBuffer()) {
+            prevChar = eof;
+            atEnd = true;
+            return eof;
+        }
+
+        char c = buffer[bufferPos++];
+        if (c <= cr && (c == cr || c == eol)) {
+            if (c == cr || prevChar != cr) {
+                currentLineNumber++;
+            }
+            lineStart = bufferOffset + bufferPos;
+        }
+        prevChar = c;
+        return c;
+    }
+
+    /**
+     * Skips the spaces and tabs that come next, up to the end of the current block.
+     * They are not line breaks, so only the previous character read changes.
+     */
+    void skipBlanks() {
+        int pos = bufferPos;
+        while (pos < bufferLimit && (buffer[pos] == ' ' || buffer[pos] == '\t')) {
+            pos++;
+        }
+        if (pos != bufferPos) {
+            prevChar = buffer[pos - 1];
+            bufferPos = pos;
+        }
+    }
+
+    /**
+     * Skips the characters that come next up to, but not including, the first
+     * that is one of the given stop characters, a line break or eof, and at
+     * most max characters. Only the current block is searched, so fewer may
+     * be skipped; the next call to getNextChar() goes on from there as usual.
+     * The characters skipped hold no line breaks, so the line number is unchanged.
+     *
+     * @param stop1 a character to stop at
+     * @param stop2 another character to stop at
+     * @param max   the most characters to skip
+     * @param copy  where to append the characters skipped, or null to not copy them
+     * @return the number of characters skipped
+     */
+    int skipUntil(char stop1, char stop2, int max, StringBuilder copy) {
+        int start = bufferPos;
+        int end = (int) Math.min(bufferLimit, (long) start + max);
+        int pos = start;
+        while (pos < end) {
+            char c = buffer[pos];
+            if (c == stop1 || c == stop2 || (c <= cr && (c == cr || c == eol || c == eof))) {
+                break;
+            }
+            pos++;
+        }
+        if (pos != start) {
+            prevChar = buffer[pos - 1];
+            bufferPos = pos;
+            if (copy != null) {
+                copy.append(buffer, start, pos - start);
+            }
+        }
+        return pos - start;
+    }
+
+    /**
+     * Replaces the contents of the buffer with the next block of characters.
+     *
+     * @return true if at least one character was read, false at the end of the source
+     */
+    private boolean fillBuffer() {
+        if (exhausted) {
+            return false;
+        }
+
         try {
-            int c = sourceReader.read();
+            int count;
+            if (mappedBytes != null) {
+                count = decodeBlock();
+            }
+            else if (sourceText != null) {
+                count = copyBlock();
+            }
+            else {
+                count = sourceReader.read(buffer, 0, buffer.length);
+            }
 
-            if (c == -1) {
-                c = eof;
+            bufferOffset += bufferLimit;
+            if (count <= 0) {
+                exhausted = true;
+                bufferPos = bufferLimit = 0;
+                return false;
             }
-            else if (c == cr || (c == eol && prevChar != cr)) {
-                currentLineNumber++;
+            bufferPos = 0;
+            bufferLimit = count;
+            if (retained != null) {
+                retained.append(buffer, 0, count);
             }
-            prevChar = c;
-            return (char) c;
+            return true;
         } catch (IOException e) {
             throw new CompilationException("File " + filename + " could not be read.");
         }
     }
-}
 
+    /**
+     * Copies the next block of the in-memory text into the buffer.
+     *
+     * @return the number of characters copied
+     */
+    private int copyBlock() {
+        int count = Math.min(buffer.length, sourceText.length() - sourceTextPos);
+        if (sourceText instanceof String) {
+            ((String) sourceText).getChars(sourceTextPos, sourceTextPos + count, buffer, 0);
+        }
+        else if (sourceText instanceof StringBuilder) {
+            ((StringBuilder) sourceText).getChars(sourceTextPos, sourceTextPos + count, buffer, 0);
+        }
+        else {
+            for (int i = 0; i < count; i++) {
+                buffer[i] = sourceText.charAt(sourceTextPos + i);
+            }
+        }
+        sourceTextPos += count;
+        return count;
+    }
+
+    /**
+     * Decodes the next block of the mapped file into the buffer. The bytes are
+     * staged through a heap buffer first, because the charset decoders only take
+     * their fast array-to-array path when neither side is a direct buffer.
+     *
+     * @return the number of characters decoded
+     */
+    private int decodeBlock() {
+        CharBuffer out = CharBuffer.wrap(buffer);
+        while (out.position() == 0 && !exhausted) {
+            int count = Math.min(stagedBytes.remaining(), mappedBytes.remaining());
+            mappedBytes.get(stagedBytes.array(), stagedBytes.position(), count);
+            stagedBytes.position(stagedBytes.position() + count);
+            stagedBytes.flip();
+
+            boolean endOfInput = !mappedBytes.hasRemaining();
+            CoderResult result = decoder.decode(stagedBytes, out, endOfInput);
+            stagedBytes.compact();
+            if (endOfInput && result.isUnderflow()) {
+                decoder.flush(out);
+                mappedBytes = null;
+                exhausted = true;
+            }
+        }
+        return out.position();
+    }
+
+    /**
+     * Creates a decoder for the platform charset that, like FileReader,
+     * replaces malformed input rather than failing.
+     */
+    private static CharsetDecoder newDecoder() {
+        return Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+}
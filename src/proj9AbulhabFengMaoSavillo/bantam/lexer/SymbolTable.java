@@ -0,0 +1,169 @@
+/*
+ * File: SymbolTable.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the SymbolTable class, which interns identifier names
+ * and gives each distinct name an integer id.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import java.util.Arrays;
+
+/**
+ * The SymbolTable class maps each distinct identifier name to a small int id,
+ * handed out in the order the names are first seen. Names are looked up
+ * straight from the chars the Scanner collects, so a String is only created
+ * the first time a name is seen, and every later occurrence shares it.
+ * Two identifiers are the same name exactly when their ids are equal.
+ * A SymbolTable is not safe to use from more than one thread at once.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class SymbolTable
+{
+    /**
+     * The id of a token that is not an identifier, or of a name not in the table
+     */
+    public static final int NO_SYMBOL = -1;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int[] slots;     // open-addressed hash table of id + 1, or 0 for an empty slot
+    private String[] names;  // the name of each id
+    private int[] hashes;    // the hash of each id's name, so growing need not rehash the chars
+    private int size;
+
+    /**
+     * Creates an empty SymbolTable
+     */
+    public SymbolTable()
+    {
+        this.slots = new int[INITIAL_CAPACITY * 2];
+        this.names = new String[INITIAL_CAPACITY];
+        this.hashes = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the id of the given name, adding it to the table if it is new
+     *
+     * @param chars the chars of the name
+     * @return the id of the name
+     */
+    public int intern(CharSequence chars)
+    {
+        int hash = hash(chars);
+        int mask = this.slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask)
+        {
+            int id = this.slots[slot] - 1;
+            if (id == NO_SYMBOL)
+            {
+                id = this.add(chars.toString(), hash);
+                this.slots[slot] = id + 1;
+                if (this.size * 2 > this.slots.length)
+                    this.rehash();
+                return id;
+            }
+            if (this.hashes[id] == hash && contentEquals(this.names[id], chars))
+                return id;
+        }
+    }
+
+    /**
+     * Returns the id of the given name, or NO_SYMBOL if it is not in the table
+     *
+     * @param chars the chars of the name
+     * @return the id of the name
+     */
+    public int lookup(CharSequence chars)
+    {
+        int hash = hash(chars);
+        int mask = this.slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask)
+        {
+            int id = this.slots[slot] - 1;
+            if (id == NO_SYMBOL || (this.hashes[id] == hash && contentEquals(this.names[id], chars)))
+                return id;
+        }
+    }
+
+    /**
+     * Returns the name with the given id
+     *
+     * @param id the id of a name in the table
+     * @return the name
+     */
+    public String getName(int id)
+    {
+        if (id < 0 || id >= this.size)
+            throw new IndexOutOfBoundsException("Symbol id " + id + " out of range 0.." + this.size);
+        return this.names[id];
+    }
+
+    /**
+     * Returns the number of distinct names in the table
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Gives the next id to the given name
+     */
+    private int add(String name, int hash)
+    {
+        if (this.size == this.names.length)
+        {
+            this.names = Arrays.copyOf(this.names, this.size * 2);
+            this.hashes = Arrays.copyOf(this.hashes, this.size * 2);
+        }
+        this.names[this.size] = name;
+        this.hashes[this.size] = hash;
+        return this.size++;
+    }
+
+    /**
+     * Doubles the hash table and puts every id back in it
+     */
+    private void rehash()
+    {
+        int[] newSlots = new int[this.slots.length * 2];
+        int mask = newSlots.length - 1;
+        for (int id = 0; id < this.size; id++)
+        {
+            int slot = this.hashes[id] & mask;
+            while (newSlots[slot] != 0)
+                slot = (slot + 1) & mask;
+            newSlots[slot] = id + 1;
+        }
+        this.slots = newSlots;
+    }
+
+    /**
+     * Hashes the chars the way String.hashCode() does, then spreads the
+     * high bits into the low bits the hash table indexes by
+     */
+    private static int hash(CharSequence chars)
+    {
+        int hash = 0;
+        for (int i = 0; i < chars.length(); i++)
+            hash = 31 * hash + chars.charAt(i);
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean contentEquals(String name, CharSequence chars)
+    {
+        if (name.length() != chars.length())
+            return false;
+        for (int i = 0; i < name.length(); i++)
+            if (name.charAt(i) != chars.charAt(i))
+                return false;
+        return true;
+    }
+}
@@ -15,11 +15,6 @@
 
  package proj9AbulhabFengMaoSavillo.bantam.lexer;
 
- import java.util.Set;
- import java.util.HashSet;
- import java.util.Collections;
- import java.util.Arrays;
-
  public class Token
  {
      //instance variables
@@ -27,26 +22,85 @@
      public String spelling; // the actual sequence of chars in the token
      public int position; // the line number where the token was found
 
+     // the source span: offsets are longs, since a source read through a Reader
+     // may pass 2G chars; the line is in the high half of lineColumn and the
+     // column in the low half; -1 if unknown
+     private long startOffset;
+     private long endOffset;
+     private long lineColumn;
+
+     private int symbol; // the SymbolTable id of an identifier's name, or SymbolTable.NO_SYMBOL
+
      public String getSpelling() {
          return spelling;
      }
 
+     /**
+      * Returns the offset of the first char of the token in the source text, or -1 if unknown
+      */
+     public long getStartOffset() {
+         return startOffset;
+     }
+
+     /**
+      * Returns the offset just past the last char of the token in the source text, or -1 if unknown
+      */
+     public long getEndOffset() {
+         return endOffset;
+     }
+
+     /**
+      * Returns the line of the first char of the token, starting from 1, or -1 if unknown.
+      * Unlike position, this is the line a string constant starts on.
+      */
+     public int getLine() {
+         return (int) (lineColumn >> 32);
+     }
+
+     /**
+      * Returns the column of the first char of the token, starting from 1, or -1 if unknown
+      */
+     public int getColumn() {
+         return (int) lineColumn;
+     }
+
+     /**
+      * Returns the id of an identifier's name in the SymbolTable of the Scanner
+      * that found it, or SymbolTable.NO_SYMBOL for other tokens and when unknown.
+      * Two identifiers from the same table have the same name exactly when their ids are equal.
+      */
+     public int getSymbol() {
+         return symbol;
+     }
+
 
      //constructor
      Token(Kind kind, String spelling, int position) {
+         this(kind, spelling, position, -1, -1, -1, -1, SymbolTable.NO_SYMBOL);
+     }
+
+     /**
+      * Creates a token that knows where it is in the source
+      *
+      * @param kind        the kind of the token, as the Scanner found it: boolean
+      *                    constants and reserved words are not IDENTIFIERs
+      * @param spelling    the chars of the token, or null if the Scanner did not keep them
+      * @param position    the line number reported for the token
+      * @param startOffset the offset of its first char
+      * @param endOffset   the offset just past its last char
+      * @param line        the line of its first char
+      * @param column      the column of its first char
+      * @param symbol      the id of its name if it is an identifier, or SymbolTable.NO_SYMBOL
+      */
+     Token(Kind kind, String spelling, int position, long startOffset, long endOffset,
+           int line, int column, int symbol) {
          this.spelling = spelling;
          this.position = position;
-
-         //patch the kind in the case of boolean constants and keywords
-         if (kind == Kind.IDENTIFIER && (spelling.equals("true") || spelling.equals("false"))) {
-             this.kind = Kind.BOOLEAN;
-         }
-         else if (kind == Kind.IDENTIFIER && reservedWords.contains(spelling)) {
-             this.kind = Enum.valueOf(Kind.class, spelling.toUpperCase());
-         }
-         else {
-             this.kind = kind;
-         }
+         this.startOffset = startOffset;
+         this.endOffset = endOffset;
+         this.lineColumn = ((long) line << 32) | (column & 0xFFFFFFFFL);
+         this.symbol = symbol;
+         this.kind = kind;
      }
 
      public String toString() {
@@ -78,10 +132,6 @@
          BREAK, CAST, CLASS, VAR, ELSE, EXTENDS, FOR, IF, INSTANCEOF, NEW,
          RETURN, WHILE
      }
-
-     private static Set<String> reservedWords = Collections.unmodifiableSet(
-             new HashSet<>(Arrays.asList("break", "cast", "class", "var",
-                     "else", "extends", "for", "if", "instanceof", "new", "return", "while")));
  }
 
 	
@@ -0,0 +1,372 @@
+/*
+ * File: TokenBuffer.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the TokenBuffer class, which stores a scanned stream of
+ * Bantam Java tokens in primitive arrays over the source text.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import proj9AbulhabFengMaoSavillo.bantam.util.CompilationException;
+
+import java.util.Arrays;
+
+/**
+ * The TokenBuffer class holds the tokens of a source as parallel arrays of
+ * kinds, start and end offsets and line numbers, so that scanning into it
+ * creates no object per token. Spellings and Token objects are only built
+ * when a caller asks for them; the names of identifiers are interned in the
+ * buffer's SymbolTable then, so that Tokens built from it carry symbol ids.
+ * Like a SymbolTable, a TokenBuffer is not safe to read from more than one
+ * thread at once.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class TokenBuffer
+{
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+
+    // the low bits of each kind entry hold the kind's ordinal, the high bits
+    // the number of eof chars ending the spelling past the end of the text
+    private static final int KIND_BITS = 6;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    private final CharSequence text;  // the text of the source the tokens were scanned from
+    private LineIndex lineIndex;      // the line starts of the text, found when first needed
+    private SymbolTable symbolTable;  // the table the names of identifiers are interned in when asked for
+    private byte[] kinds;
+    private int[] starts;
+    private int[] ends;
+    private int[] lines;
+    private int size;
+
+    /**
+     * Creates an empty TokenBuffer over the given source text
+     *
+     * @param text the text the tokens are scanned from
+     */
+    TokenBuffer(CharSequence text)
+    {
+        this(text, null);
+    }
+
+    /**
+     * Creates an empty TokenBuffer over the given source text, whose line
+     * starts are kept by the given index, for text that may change
+     *
+     * @param text      the text the tokens are scanned from
+     * @param lineIndex the line starts of the text, or null to find them when first needed
+     */
+    TokenBuffer(CharSequence text, LineIndex lineIndex)
+    {
+        this.text = text;
+        this.lineIndex = lineIndex;
+        this.symbolTable = new SymbolTable();
+        this.kinds = new byte[INITIAL_CAPACITY];
+        this.starts = new int[INITIAL_CAPACITY];
+        this.ends = new int[INITIAL_CAPACITY];
+        this.lines = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Appends a token to the buffer
+     *
+     * @param kind      the kind of the token
+     * @param start     the offset of its first char
+     * @param end       the offset just past its last char
+     * @param line      its line number
+     * @param pastEnd   the number of eof chars its spelling has past the end of the text
+     */
+    void add(Token.Kind kind, long start, long end, int line, int pastEnd)
+    {
+        //the text is a CharSequence, so a longer source cannot be held here at all
+        if (end > Integer.MAX_VALUE)
+            throw new CompilationException("Sources past 2G chars do not fit in a TokenBuffer; " +
+                                           "scan them into an OffHeapTokenStore instead.");
+        this.ensureCapacity(this.size + 1);
+
+        this.kinds[this.size] = (byte) (kind.ordinal() | (pastEnd << KIND_BITS));
+        this.starts[this.size] = (int) start;
+        this.ends[this.size] = (int) end;
+        this.lines[this.size] = line;
+        this.size++;
+    }
+
+    /**
+     * Appends a range of the tokens of another buffer over the same text
+     *
+     * @param source the buffer to copy from
+     * @param from   the index of the first token to copy
+     * @param to     the index just past the last token to copy
+     */
+    void append(TokenBuffer source, int from, int to)
+    {
+        int count = to - from;
+        this.ensureCapacity(this.size + count);
+        System.arraycopy(source.kinds, from, this.kinds, this.size, count);
+        System.arraycopy(source.starts, from, this.starts, this.size, count);
+        System.arraycopy(source.ends, from, this.ends, this.size, count);
+        System.arraycopy(source.lines, from, this.lines, this.size, count);
+        this.size += count;
+    }
+
+    /**
+     * Replaces the tokens from index from up to index to with the tokens of the
+     * given buffer, and moves the tokens after them by the given deltas.
+     * The tokens after them are stored at absolute offsets, so this takes
+     * time linear in their number unless nothing about them changes.
+     *
+     * @param from        the index of the first token to replace
+     * @param to          the index just past the last token to replace
+     * @param replacement the tokens to put in their place
+     * @param offsetDelta the amount to add to the offsets of the tokens after them
+     * @param lineDelta   the amount to add to the line numbers of the tokens after them
+     */
+    void splice(int from, int to, TokenBuffer replacement, int offsetDelta, int lineDelta)
+    {
+        int tail = this.size - to;
+        int newSize = from + replacement.size + tail;
+        this.ensureCapacity(newSize);
+
+        int newTo = from + replacement.size;
+        if (newTo != to)
+        {
+            System.arraycopy(this.kinds, to, this.kinds, newTo, tail);
+            System.arraycopy(this.starts, to, this.starts, newTo, tail);
+            System.arraycopy(this.ends, to, this.ends, newTo, tail);
+            System.arraycopy(this.lines, to, this.lines, newTo, tail);
+        }
+        if (offsetDelta != 0 || lineDelta != 0)
+        {
+            for (int i = newTo; i < newSize; i++)
+            {
+                this.starts[i] += offsetDelta;
+                this.ends[i] += offsetDelta;
+                this.lines[i] += lineDelta;
+            }
+        }
+
+        System.arraycopy(replacement.kinds, 0, this.kinds, from, replacement.size);
+        System.arraycopy(replacement.starts, 0, this.starts, from, replacement.size);
+        System.arraycopy(replacement.ends, 0, this.ends, from, replacement.size);
+        System.arraycopy(replacement.lines, 0, this.lines, from, replacement.size);
+        this.size = newSize;
+    }
+
+    /**
+     * Removes the tokens from the given index on
+     *
+     * @param newSize the number of tokens to keep
+     */
+    void truncate(int newSize)
+    {
+        this.size = newSize;
+    }
+
+    /**
+     * Grows the arrays, if needed, to hold the given number of tokens
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > this.kinds.length)
+        {
+            capacity = Math.max(capacity, this.kinds.length * 2);
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+            this.lines = Arrays.copyOf(this.lines, capacity);
+        }
+    }
+
+    /**
+     * Returns the index of the first token that ends after the given offset,
+     * which is the token containing the offset if there is one, or size()
+     * if every token ends at or before it
+     *
+     * @param offset an offset in the text
+     * @return the index of the token
+     */
+    public int findTokenAt(int offset)
+    {
+        int low = 0;
+        int high = this.size;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (this.ends[middle] <= offset)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the number of tokens in the buffer
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Returns the kind of the token at the given index
+     */
+    public Token.Kind getKind(int index)
+    {
+        return KINDS[this.kinds[this.checkIndex(index)] & KIND_MASK];
+    }
+
+    /**
+     * Returns the offset of the first char of the token at the given index
+     */
+    public int getStart(int index)
+    {
+        return this.starts[this.checkIndex(index)];
+    }
+
+    /**
+     * Returns the offset just past the last char of the token at the given index
+     */
+    public int getEnd(int index)
+    {
+        return this.ends[this.checkIndex(index)];
+    }
+
+    /**
+     * Returns the line number of the token at the given index, as Token.position reports it
+     */
+    public int getLine(int index)
+    {
+        return this.lines[this.checkIndex(index)];
+    }
+
+    /**
+     * Returns the column of the first char of the token at the given index,
+     * starting from 1 like Token.getColumn()
+     */
+    public int getColumn(int index)
+    {
+        if (this.lineIndex == null)
+            this.lineIndex = new LineIndex(this.text);
+        return this.lineIndex.getColumn(this.getStart(index)) + 1;
+    }
+
+    /**
+     * Returns the number of eof chars the spelling of the token at the given
+     * index has past the end of the text
+     */
+    int getPastEnd(int index)
+    {
+        return (this.kinds[this.checkIndex(index)] & 0xFF) >>> KIND_BITS;
+    }
+
+    /**
+     * Builds the spelling of the token at the given index from the source text
+     *
+     * @param index the index of the token
+     * @return the same spelling Scanner.scan() gives the token
+     */
+    public String getSpelling(int index)
+    {
+        StringBuilder spelling = new StringBuilder();
+        spelling.append(this.text, this.getStart(index), this.getEnd(index));
+        for (int i = this.getPastEnd(index); i > 0; i--)
+            spelling.append(SourceFile.eof);
+        return spelling.toString();
+    }
+
+    /**
+     * Returns the id of the name of the token at the given index in the
+     * buffer's SymbolTable, interning it if needed, or SymbolTable.NO_SYMBOL
+     * if the token is not an identifier
+     *
+     * @param index the index of the token
+     * @return the symbol id of the token
+     */
+    public int getSymbol(int index)
+    {
+        if (this.getKind(index) != Token.Kind.IDENTIFIER)
+            return SymbolTable.NO_SYMBOL;
+        return this.symbolTable.intern(this.getSpelling(index));
+    }
+
+    /**
+     * Returns the table the names of identifiers are interned in
+     *
+     * @return the symbol table
+     */
+    public SymbolTable getSymbolTable()
+    {
+        return this.symbolTable;
+    }
+
+    /**
+     * Sets the table to intern the names of identifiers in, such as the one
+     * of the Scanner that fills the buffer, so that both give a name the same id
+     *
+     * @param symbolTable the symbol table
+     */
+    void setSymbolTable(SymbolTable symbolTable)
+    {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Builds a Token for the token at the given index; an identifier's
+     * spelling is the String its name is interned as
+     *
+     * @param index the index of the token
+     * @return a Token equal to the one Scanner.scan() gives
+     */
+    public Token getToken(int index)
+    {
+        int start = this.getStart(index);
+        int end = this.getEnd(index);
+
+        //a string's line is the one it ends on, so count back over its line breaks
+        int line = this.lines[index];
+        if (start < this.text.length() && this.text.charAt(start) == '"')
+        {
+            for (int i = start; i < end; i++)
+            {
+                char c = this.text.charAt(i);
+                if (c == '\r' || (c == '\n' && (i == start || this.text.charAt(i - 1) != '\r')))
+                    line--;
+            }
+        }
+
+        Token.Kind kind = this.getKind(index);
+        String spelling = this.getSpelling(index);
+        int symbol = SymbolTable.NO_SYMBOL;
+        if (kind == Token.Kind.IDENTIFIER)
+        {
+            symbol = this.symbolTable.intern(spelling);
+            spelling = this.symbolTable.getName(symbol);
+        }
+
+        return new Token(kind, spelling, this.lines[index],
+                         start, end, line, this.getColumn(index), symbol);
+    }
+
+    /**
+     * Returns the source text the tokens were scanned from
+     */
+    public CharSequence getText()
+    {
+        return this.text;
+    }
+
+    private int checkIndex(int index)
+    {
+        if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Token index " + index + " out of range 0.." + this.size);
+        return index;
+    }
+}
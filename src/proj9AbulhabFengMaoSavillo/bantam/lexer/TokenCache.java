@@ -0,0 +1,411 @@
+/*
+ * File: TokenCache.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the TokenCache class, which keeps the tokens and errors
+ * of scanned texts on disk so unchanged texts need not be scanned again.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import proj9AbulhabFengMaoSavillo.bantam.util.CompilationException;
+import proj9AbulhabFengMaoSavillo.bantam.util.Error;
+import proj9AbulhabFengMaoSavillo.bantam.util.ErrorHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The TokenCache class stores the result of scanning a text, its tokens and
+ * errors, in a directory on disk, under a hash of the text's chars and the
+ * lexer version. Scanning the same text again reads the result back instead
+ * of running the Scanner. Tokens are stored as deltas of their offsets and
+ * lines in a variable-length encoding, a few bytes each. When the directory
+ * grows past its size limit, the entries used least recently are deleted.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class TokenCache
+{
+    /**
+     * Identifies the output of the current lexer; must be changed whenever a
+     * change to the lexer changes the tokens or errors of any text
+     */
+    public static final int LEXER_VERSION = 1;
+
+    /**
+     * The size limit of the default cache, in bytes
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private static final int MAGIC = 0x42544B43; // "BTKC"
+    private static final String SUFFIX = ".tokens";
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+    private static final Error.Kind[] ERROR_KINDS = Error.Kind.values();
+
+    private static TokenCache defaultCache;
+
+    private final Path directory;
+    private final long maxBytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a TokenCache that keeps its entries in the given directory,
+     * creating it if needed
+     *
+     * @param directory the directory to keep entries in
+     * @param maxBytes  the most bytes the entries may take up in all
+     */
+    public TokenCache(Path directory, long maxBytes)
+    {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try
+        {
+            Files.createDirectories(directory);
+        }
+        catch (IOException e)
+        {
+            throw new CompilationException("Token cache directory " + directory + " could not be created.");
+        }
+    }
+
+    /**
+     * Returns the cache shared by the whole program, kept in the temporary directory
+     */
+    public static synchronized TokenCache getDefault()
+    {
+        if (defaultCache == null)
+            defaultCache = new TokenCache(Paths.get(System.getProperty("java.io.tmpdir"),
+                                                    "bantam-token-cache"), DEFAULT_MAX_BYTES);
+        return defaultCache;
+    }
+
+    /**
+     * Scans the given file, or reads its tokens from the cache if its
+     * contents have been scanned before
+     *
+     * @param filename the file to scan
+     * @param handler  the ErrorHandler to register the file's errors to
+     * @return the tokens of the file, not including EOF
+     */
+    public TokenBuffer scan(String filename, ErrorHandler handler)
+    {
+        String text;
+        try
+        {
+            text = new String(Files.readAllBytes(Paths.get(filename)));
+        }
+        catch (IOException e)
+        {
+            throw new CompilationException("File " + filename + " could not be read.");
+        }
+        return this.scan(text, filename, handler);
+    }
+
+    /**
+     * Scans the given text, or reads its tokens from the cache if the same
+     * text has been scanned before
+     *
+     * @param text     the text to scan, which must not change while it is scanned
+     * @param filename the name of the file the text belongs to, for error messages
+     * @param handler  the ErrorHandler to register the text's errors to
+     * @return the tokens of the text, not including EOF
+     */
+    public TokenBuffer scan(CharSequence text, String filename, ErrorHandler handler)
+    {
+        return this.scan(text, filename, handler, null, null);
+    }
+
+    /**
+     * Scans the given text, or reads its tokens from the cache if the same
+     * text has been scanned before, letting the scan be cancelled and
+     * reporting its progress. A cancelled scan stores nothing.
+     *
+     * @param text              the text to scan, which must not change while it is scanned
+     * @param filename          the name of the file the text belongs to, for error messages
+     * @param handler           the ErrorHandler to register the text's errors to
+     * @param cancellationToken the token that cancels the scan, or null
+     * @param progressListener  the listener told how far the scan has got, or null
+     * @return the tokens of the text, not including EOF
+     * @throws java.util.concurrent.CancellationException if the scan is cancelled
+     */
+    public TokenBuffer scan(CharSequence text, String filename, ErrorHandler handler,
+                            CancellationToken cancellationToken, Scanner.ProgressListener progressListener)
+    {
+        Path entry = this.directory.resolve(hash(text) + SUFFIX);
+
+        List<Error> errors = new ArrayList<>();
+        TokenBuffer tokens = this.read(entry, text, filename, errors);
+        if (tokens != null)
+        {
+            synchronized (this) { this.hits++; }
+            if (progressListener != null)
+                progressListener.progress(text.length(), text.length());
+        }
+        else
+        {
+            synchronized (this) { this.misses++; }
+
+            //keep every error, so the caller's handler can apply its own cap
+            ErrorHandler scanHandler = new ErrorHandler(Integer.MAX_VALUE);
+            Scanner scanner = new Scanner(text, filename, scanHandler);
+            scanner.setCancellationToken(cancellationToken);
+            scanner.setProgressListener(progressListener);
+            tokens = scanner.scanToBuffer();
+            errors = scanHandler.getErrorList();
+            this.write(entry, tokens, errors);
+        }
+
+        for (Error error : errors)
+            handler.register(error.getKind(), error.getFilename(), error.getLineNum(), error.getMessage());
+        return tokens;
+    }
+
+    /**
+     * Returns the number of scans answered from the cache
+     */
+    public synchronized long getHitCount()
+    {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of scans that ran the Scanner
+     */
+    public synchronized long getMissCount()
+    {
+        return this.misses;
+    }
+
+    /**
+     * Reads the tokens and errors of an entry, marking it as just used
+     *
+     * @param entry    the file of the entry
+     * @param text     the text the entry is for
+     * @param filename the name to give the errors
+     * @param errors   the list to add the errors to
+     * @return the tokens, or null if there is no usable entry
+     */
+    private TokenBuffer read(Path entry, CharSequence text, String filename, List<Error> errors)
+    {
+        if (!Files.exists(entry))
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != LEXER_VERSION)
+                return null;
+
+            TokenBuffer tokens = new TokenBuffer(text);
+            int count = in.readInt();
+            int start = 0;
+            int line = 1;
+            for (int i = 0; i < count; i++)
+            {
+                int kind = in.readUnsignedByte();
+                int pastEnd = in.readUnsignedByte();
+                start += readVarInt(in);
+                int end = start + readVarInt(in);
+                line += readVarInt(in);
+                tokens.add(KINDS[kind], start, end, line, pastEnd);
+            }
+
+            int errorCount = in.readInt();
+            for (int i = 0; i < errorCount; i++)
+            {
+                Error.Kind kind = ERROR_KINDS[in.readUnsignedByte()];
+                boolean filed = in.readBoolean();
+                int lineNum = in.readInt();
+                String message = in.readUTF();
+                errors.add(new Error(kind, filed ? filename : null, lineNum, message));
+            }
+
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return tokens;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            //a damaged or vanished entry is a miss, and is replaced
+            errors.clear();
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry, replacing it at once so readers never see half an
+     * entry, then evicts entries if the cache has grown too big
+     *
+     * @param entry  the file of the entry
+     * @param tokens the tokens to store
+     * @param errors the errors to store
+     */
+    private void write(Path entry, TokenBuffer tokens, List<Error> errors)
+    {
+        try
+        {
+            Path temp = Files.createTempFile(this.directory, "entry-", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp))))
+            {
+                writeEntry(out, tokens, errors);
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.evict();
+        }
+        catch (IOException e)
+        {
+            //the cache only saves time, so a failed write is not an error
+        }
+    }
+
+    /**
+     * Writes tokens and errors in the format of a cache entry: a magic number
+     * and the lexer version, the token count, then for each token its kind,
+     * its eof chars past the end and the deltas of its start, length and line
+     * as var-ints, then the error count and each error's kind, whether it has
+     * a filename, its line and its message
+     *
+     * @param out    the stream to write to
+     * @param tokens the tokens to write
+     * @param errors the errors to write
+     */
+    static void writeEntry(DataOutputStream out, TokenBuffer tokens, List<Error> errors) throws IOException
+    {
+        out.writeInt(MAGIC);
+        out.writeInt(LEXER_VERSION);
+        out.writeInt(tokens.size());
+        int start = 0;
+        int line = 1;
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            out.writeByte(tokens.getKind(i).ordinal());
+            out.writeByte(tokens.getPastEnd(i));
+            writeVarInt(out, tokens.getStart(i) - start);
+            writeVarInt(out, tokens.getEnd(i) - tokens.getStart(i));
+            writeVarInt(out, tokens.getLine(i) - line);
+            start = tokens.getStart(i);
+            line = tokens.getLine(i);
+        }
+
+        out.writeInt(errors.size());
+        for (Error error : errors)
+        {
+            out.writeByte(error.getKind().ordinal());
+            out.writeBoolean(error.getFilename() != null);
+            out.writeInt(error.getLineNum());
+            out.writeUTF(error.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the entries used least recently until the rest fit in the size limit
+     */
+    private synchronized void evict() throws IOException
+    {
+        List<File> entries;
+        try (Stream<Path> paths = Files.list(this.directory))
+        {
+            entries = paths.map(Path::toFile)
+                           .filter(file -> file.getName().endsWith(SUFFIX))
+                           .sorted(Comparator.comparingLong(File::lastModified).reversed())
+                           .collect(Collectors.toList());
+        }
+
+        long total = 0;
+        for (File file : entries)
+        {
+            total += file.length();
+            if (total > this.maxBytes)
+                file.delete();
+        }
+    }
+
+    /**
+     * Hashes the chars of the text with SHA-256
+     *
+     * @return the hash as hex digits
+     */
+    private static String hash(CharSequence text)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        byte[] block = new byte[8192];
+        int used = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            block[used++] = (byte) (c >>> 8);
+            block[used++] = (byte) c;
+            if (used == block.length)
+            {
+                digest.update(block, 0, used);
+                used = 0;
+            }
+        }
+        digest.update(block, 0, used);
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    /**
+     * Writes a non-negative int in 7-bit groups, low group first,
+     * with the high bit of each byte set if more follow
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads an int written by writeVarInt()
+     */
+    private static int readVarInt(DataInputStream in) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; ; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * File: TokenRing.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/18
+ * This file contains the TokenRing class, a bounded queue of tokens that
+ * passes them from a scanning thread to a consuming thread without locks.
+ */
+
+package proj9AbulhabFengMaoSavillo.bantam.lexer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The TokenRing class holds tokens in a ring of primitive arrays shared by
+ * exactly one producer, a Scanner running scanToRing(), and one consumer
+ * calling drain(). Each side counts the tokens it has written or read and
+ * publishes its count with an ordered store, so neither side ever locks and
+ * no object is created per token. The producer publishes a batch of tokens
+ * at a time, and the consumer takes every token published so far at once.
+ * A side that finds the ring full or empty spins briefly, then parks.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class TokenRing
+{
+    /**
+     * Receives the tokens drained from the ring
+     */
+    public interface Handler
+    {
+        /**
+         * Called for each token, in order
+         *
+         * @param kind  the kind of the token
+         * @param start the offset of its first char
+         * @param end   the offset just past its last char
+         * @param line  its line number, as Token.position reports it
+         */
+        void onToken(Token.Kind kind, long start, long end, int line);
+    }
+
+    /**
+     * The capacity of a ring made with the default constructor
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+    private static final int BATCH_SIZE = 256;    // tokens written before the producer publishes them
+    private static final int SPINS = 100;         // times to yield before parking when waiting
+    private static final long PARK_NANOS = 20000;
+
+    private final int mask;
+    private final byte[] kinds;
+    private final long[] starts;
+    private final long[] ends;
+    private final int[] lines;
+
+    // the number of tokens written and read so far, each published by its own side only
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong read = new AtomicLong();
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    private volatile CharSequence text;
+
+    // the producer's own copies of the counts
+    private long producerWritten;
+    private long producerRead;
+
+    // the consumer's own copies of the counts
+    private long consumerWritten;
+    private long consumerRead;
+
+    /**
+     * Creates a TokenRing with the default capacity
+     */
+    public TokenRing()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a TokenRing
+     *
+     * @param capacity the most tokens the ring holds, which must be a power of two
+     *                 and at least the producer's batch size of 256
+     */
+    public TokenRing(int capacity)
+    {
+        if (Integer.bitCount(capacity) != 1 || capacity < BATCH_SIZE)
+            throw new IllegalArgumentException("Ring capacity " + capacity +
+                                               " is not a power of two of at least " + BATCH_SIZE);
+        this.mask = capacity - 1;
+        this.kinds = new byte[capacity];
+        this.starts = new long[capacity];
+        this.ends = new long[capacity];
+        this.lines = new int[capacity];
+    }
+
+    /**
+     * Sets the text the tokens are scanned from; called by the producer
+     * before it adds the first token
+     */
+    void setText(CharSequence text)
+    {
+        this.text = text;
+    }
+
+    /**
+     * Returns the text the tokens are scanned from, or null if the producer
+     * was not asked to keep it or has not started yet
+     */
+    public CharSequence getText()
+    {
+        return this.text;
+    }
+
+    /**
+     * Adds a token, waiting while the ring is full; called by the producer only
+     *
+     * @param kind  the kind of the token
+     * @param start the offset of its first char
+     * @param end   the offset just past its last char
+     * @param line  its line number
+     */
+    void add(Token.Kind kind, long start, long end, int line)
+    {
+        if (this.producerWritten - this.producerRead > this.mask)
+        {
+            //let the consumer see everything written before waiting for it
+            this.written.lazySet(this.producerWritten);
+            for (int spins = 0; this.producerWritten - (this.producerRead = this.read.get()) > this.mask; spins++)
+                idle(spins);
+        }
+
+        int index = (int) this.producerWritten & this.mask;
+        this.kinds[index] = (byte) kind.ordinal();
+        this.starts[index] = start;
+        this.ends[index] = end;
+        this.lines[index] = line;
+        this.producerWritten++;
+
+        if ((this.producerWritten & (BATCH_SIZE - 1)) == 0)
+            this.written.lazySet(this.producerWritten);
+    }
+
+    /**
+     * Publishes the last tokens and marks the end of the stream; called by
+     * the producer only
+     */
+    void close()
+    {
+        this.written.lazySet(this.producerWritten);
+        this.closed = true;
+    }
+
+    /**
+     * Ends the stream because the producer failed; the consumer's next
+     * drain() throws the exception once the tokens before it are drained
+     *
+     * @param exception why the producer stopped, a RuntimeException or an Error
+     */
+    void fail(Throwable exception)
+    {
+        this.failure = exception;
+        this.close();
+    }
+
+    /**
+     * Hands every token published so far to the handler, first waiting until
+     * there is at least one or the stream has ended; called by the consumer only
+     *
+     * @param handler the handler to give the tokens to
+     * @return the number of tokens drained, or -1 once the stream has ended
+     * @throws RuntimeException the exception the producer failed with, if it did;
+     *                          an Error it failed with is thrown as it is
+     */
+    public int drain(Handler handler)
+    {
+        if (this.consumerWritten == this.consumerRead)
+        {
+            for (int spins = 0; ; spins++)
+            {
+                //read closed before written, so a closed stream is seen with all its tokens
+                boolean ended = this.closed;
+                this.consumerWritten = this.written.get();
+                if (this.consumerWritten != this.consumerRead)
+                    break;
+                if (ended)
+                {
+                    if (this.failure instanceof Error)
+                        throw (Error) this.failure;
+                    if (this.failure != null)
+                        throw (RuntimeException) this.failure;
+                    return -1;
+                }
+                idle(spins);
+            }
+        }
+
+        long end = this.consumerWritten;
+        for (long sequence = this.consumerRead; sequence < end; sequence++)
+        {
+            int index = (int) sequence & this.mask;
+            handler.onToken(KINDS[this.kinds[index]], this.starts[index], this.ends[index], this.lines[index]);
+        }
+        int count = (int) (end - this.consumerRead);
+        this.consumerRead = end;
+        this.read.lazySet(end);
+        return count;
+    }
+
+    /**
+     * Waits a little for the other side: yields at first, then parks
+     *
+     * @param spins how many times the caller has waited already
+     */
+    private static void idle(int spins)
+    {
+        if (spins < SPINS)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(PARK_NANOS);
+    }
+}
@@ -29,29 +29,87 @@
 package proj9AbulhabFengMaoSavillo.bantam.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * The <tt>ErrorHandler</tt> class performs error handling.
+ * Errors are kept per file, in a map from line number to the errors on that
+ * line, so registering an error takes O(log n) time. All methods are
+ * synchronized, so several threads may register errors with one handler.
+ * Errors past the cap are dropped, but counted by kind.
  */
 public class ErrorHandler {
     /**
-     * The list of errors
+     * The number of errors kept if no other cap is given
      */
-    private List<Error> errorList = new ArrayList<>();
+    public static final int DEFAULT_MAX_ERRORS = 100;
+
+    /**
+     * The most errors kept at once
+     */
+    private final int maxErrors;
+
+    /**
+     * The errors with no filename, in the order they were registered
+     */
+    private List<Error> unfiledErrors = new ArrayList<>();
+
+    /**
+     * The errors of each file by line number, with files in the order they were first seen
+     */
+    private Map<String, TreeMap<Integer, List<Error>>> fileErrors = new LinkedHashMap<>();
+
+    /**
+     * The number of errors kept
+     */
+    private int errorCount;
+
+    /**
+     * The number of errors of each kind dropped for going over the cap
+     */
+    private int[] droppedCounts = new int[Error.Kind.values().length];
+
+    /**
+     * The list of errors, as last returned by getErrorList(), or null if
+     * errors have been registered since
+     */
+    private List<Error> errorList;
+
+    /**
+     * Creates an ErrorHandler that keeps at most DEFAULT_MAX_ERRORS errors
+     */
+    public ErrorHandler() {
+        this(DEFAULT_MAX_ERRORS);
+    }
+
+    /**
+     * Creates an ErrorHandler that keeps at most the given number of errors
+     *
+     * @param maxErrors the most errors to keep
+     */
+    public ErrorHandler(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
 
     /**
      * Register an error - auxiliarly method used by the other (public) register methods
      *
      * @param error the error object
      */
-    private void register(Error error) {
+    private synchronized void register(Error error) {
         // insert a new error into the error list
-        // but keep at most 100 errors.
-        if (errorList.size() < 100) {
+        // but keep at most maxErrors errors, counting the rest.
+        if (errorCount < maxErrors) {
             insert(error);
         }
+        else {
+            droppedCounts[error.getKind().ordinal()]++;
+        }
     }
 
     /**
@@ -83,56 +141,111 @@ public class ErrorHandler {
     /**
      * return true if any errors were reported.
      */
-    public boolean errorsFound() {
-        return errorList.size() > 0;
+    public synchronized boolean errorsFound() {
+        return errorCount > 0;
     }
 
     /**
-     * Insert an error onto the error list
+     * Insert an error into the error index
      *
      * @param e error object to insert
      */
     private void insert(Error e) {
-        // the algorithm below will insert errors in order by filename first and
-        // then line number.  filenames are kept in the order that they are seen
-        // (i.e., an error is registered with that filename).  line numbers are
-        // ordered numerically.
-
-        int i = 0;
-
-        if (e.getFilename() != null) {
-            // find the section of the list with the same filename (goes to the end
-            // if a section is not found)
-            for (i = 0; i < errorList.size(); i++) {
-                if (errorList.get(i).getFilename() != null) {
-                    if (e.getFilename().equals(errorList.get(i).getFilename())) {
-                        break;
-                    }
-                }
-            }
+        // errors are listed in order by filename first and then line number.
+        // filenames are kept in the order that they are seen (i.e., an error
+        // is registered with that filename).  line numbers are ordered
+        // numerically, and errors on the same line in the order registered.
+        // errors with no filename come first, the latest first.
+
+        if (e.getFilename() == null) {
+            unfiledErrors.add(e);
+        }
+        else {
+            fileErrors.computeIfAbsent(e.getFilename(), filename -> new TreeMap<>())
+                      .computeIfAbsent(e.getLineNum(), line -> new ArrayList<>(1))
+                      .add(e);
+        }
+        errorCount++;
+        errorList = null;
+    }
 
-            // find the correct spot in the section for this error's line number
-            for (; i < errorList.size(); i++) {
-                if (!e.getFilename().equals(errorList.get(i).getFilename()) ||
-                        e.getLineNum() < (errorList.get(i)).getLineNum()) {
-                    break;
+    /**
+     * @return an unmodifiable copy of the list of registered errors
+     */
+    public synchronized List<Error> getErrorList() {
+        if (errorList == null) {
+            List<Error> errors = new ArrayList<>(errorCount);
+            for (int i = unfiledErrors.size() - 1; i >= 0; i--) {
+                errors.add(unfiledErrors.get(i));
+            }
+            for (TreeMap<Integer, List<Error>> lines : fileErrors.values()) {
+                for (List<Error> lineErrors : lines.values()) {
+                    errors.addAll(lineErrors);
                 }
             }
+            errorList = Collections.unmodifiableList(errors);
         }
+        return errorList;
+    }
 
-        // add the error to the list
-        errorList.add(i, e);
+    /**
+     * Returns the errors registered for the given file on lines in the given range
+     *
+     * @param filename  the name of the file
+     * @param firstLine the first line to include
+     * @param lastLine  the last line to include
+     * @return an unmodifiable list of the errors, in order by line number
+     */
+    public synchronized List<Error> getErrorList(String filename, int firstLine, int lastLine) {
+        TreeMap<Integer, List<Error>> lines = fileErrors.get(filename);
+        if (lines == null || firstLine > lastLine) {
+            return Collections.emptyList();
+        }
+        List<Error> errors = new ArrayList<>();
+        for (List<Error> lineErrors : lines.subMap(firstLine, true, lastLine, true).values()) {
+            errors.addAll(lineErrors);
+        }
+        return Collections.unmodifiableList(errors);
     }
 
     /**
-     * @return an unmodifiable copy of the list of registered errors
+     * Returns the number of errors of the given kind that were dropped
+     * because the cap had been reached
+     *
+     * @param kind the kind of error
+     * @return the number dropped
+     */
+    public synchronized int getDroppedCount(Error.Kind kind) {
+        return droppedCounts[kind.ordinal()];
+    }
+
+    /**
+     * Returns the number of errors of all kinds that were dropped
+     * because the cap had been reached
+     *
+     * @return the number dropped
+     */
+    public synchronized int getDroppedCount() {
+        int dropped = 0;
+        for (int count : droppedCounts) {
+            dropped += count;
+        }
+        return dropped;
+    }
+
+    /**
+     * Returns the most errors this handler keeps
      */
-    public List<Error> getErrorList() {
-        return Collections.unmodifiableList(errorList);
+    public int getMaxErrors() {
+        return maxErrors;
     }
 
-    public void clear() {
-        errorList.clear();
+    public synchronized void clear() {
+        unfiledErrors.clear();
+        fileErrors.clear();
+        errorCount = 0;
+        errorList = null;
+        Arrays.fill(droppedCounts, 0);
     }
 
 }
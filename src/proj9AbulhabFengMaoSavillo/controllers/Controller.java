@@ -123,6 +123,11 @@ public class Controller
     private SplitPane horizontalSplitPane;
     @FXML
     private Button scanButton;
+    /**
+     * Progress bar next to the Scan button, showing how far a scan has got
+     */
+    @FXML
+    private ProgressBar scanProgressBar;
 
     /**
      * This function is called after the FXML fields are populated.
@@ -245,7 +250,7 @@ public class Controller
                 // if this is a java file
                 if (currentFile.getName().endsWith(".java")) {
                     // Re-generates the tree
-                    this.structureViewController.generateStructureTree(currentCodeArea.getText());
+                    this.structureViewController.generateStructureTree(currentCodeArea.getTextSnapshot());
                     return;
                 }
         }
@@ -282,6 +287,7 @@ public class Controller
     private void setupToolbarController()
     {
         this.toolbarController.setConsole(this.console);
+        this.toolbarController.setProgressBar(this.scanProgressBar);
         this.toolbarController.setFileMenuController(this.fileMenuController);
     }
 
@@ -340,7 +346,8 @@ public class Controller
     @FXML
     private void handleScanButtonAction(Event event)
     {
-        this.toolbarController.handleScanButtonAction(event, this.javaTabPane.getCurrentFile());
+        this.toolbarController.handleScanButtonAction(this.javaTabPane.getCurrentCodeArea(),
+                                                      this.javaTabPane.getCurrentFile());
     }
 
     /**
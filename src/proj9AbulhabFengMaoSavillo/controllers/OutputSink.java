@@ -0,0 +1,182 @@
+/*
+ * File: OutputSink.java
+ * F18 CS361 Project 9
+ * Names: Melody Mao, Zena Abulhab, Yi Feng, Evan Savillo
+ * Date: 11/20/2018
+ * This file contains the OutputSink class, which gathers text written by a
+ * background task and appends it to a text area a bounded chunk per frame.
+ */
+
+package proj9AbulhabFengMaoSavillo.controllers;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.function.Consumer;
+
+/**
+ * OutputSink collects text from a worker thread and hands it to the FX thread
+ * from an AnimationTimer, so that at most one chunk, cut at a line break where
+ * possible, is appended per frame however much text is written. When more text
+ * is waiting than the sink holds, the writer blocks until the UI catches up.
+ *
+ * @author Zena Abulhab
+ * @author Yi Feng
+ * @author Melody Mao
+ * @author Evan Savillo
+ */
+public class OutputSink
+{
+    private static final int DEFAULT_FRAME_CHARS = 32 * 1024;
+    private static final int DEFAULT_MAX_PENDING_CHARS = 1024 * 1024;
+
+    private final Consumer<String> target;
+    private final int frameChars;
+    private final int maxPendingChars;
+    private final AnimationTimer timer;
+
+    // the text written but not yet appended starts at index flushedTo of pending
+    private final StringBuilder pending = new StringBuilder();
+    private int flushedTo;
+    private boolean closed;
+    private boolean cancelled;
+
+    /**
+     * Creates an OutputSink with the default chunk and buffer sizes; must be
+     * called on the FX thread
+     *
+     * @param target appends text to the area, such as area::appendText
+     */
+    public OutputSink(Consumer<String> target)
+    {
+        this(target, DEFAULT_FRAME_CHARS, DEFAULT_MAX_PENDING_CHARS);
+    }
+
+    /**
+     * Creates an OutputSink and starts flushing it every frame; must be called
+     * on the FX thread
+     *
+     * @param target          appends text to the area, such as area::appendText
+     * @param frameChars      the most chars to append per frame
+     * @param maxPendingChars the most chars to hold before blocking the writer
+     */
+    public OutputSink(Consumer<String> target, int frameChars, int maxPendingChars)
+    {
+        this.target = target;
+        this.frameChars = frameChars;
+        this.maxPendingChars = maxPendingChars;
+        this.timer = new AnimationTimer()
+        {
+            @Override
+            public void handle(long now)
+            {
+                flush();
+            }
+        };
+        this.timer.start();
+    }
+
+    /**
+     * Adds text to be appended, waiting first while the sink is full
+     *
+     * @param text the text to add
+     * @throws InterruptedException if the writer is interrupted while waiting
+     */
+    public synchronized void append(CharSequence text) throws InterruptedException
+    {
+        while (!this.cancelled && this.pending.length() - this.flushedTo > this.maxPendingChars)
+            this.wait();
+        if (!this.cancelled && !this.closed)
+            this.pending.append(text);
+    }
+
+    /**
+     * Marks the end of the text; what is still waiting is appended in the
+     * following frames, then the sink stops
+     */
+    public synchronized void close()
+    {
+        this.closed = true;
+    }
+
+    /**
+     * Drops the text still waiting and stops the sink, releasing a blocked writer
+     */
+    public synchronized void cancel()
+    {
+        this.cancelled = true;
+        this.pending.setLength(0);
+        this.flushedTo = 0;
+        this.notifyAll();
+    }
+
+    /**
+     * Stops the sink before the end of its text, unless it was closed or
+     * cancelled already: drops the text still waiting, releasing a blocked
+     * writer, and appends the notice in its place, so the target shows the
+     * text was cut off
+     *
+     * @param notice the text to append instead, such as a line saying why
+     */
+    public synchronized void cancel(String notice)
+    {
+        if (this.closed || this.cancelled)
+            return;
+        this.cancel();
+        this.pending.append(notice);
+    }
+
+    /**
+     * Appends the next chunk of waiting text to the target, on the FX thread,
+     * and stops the timer once the sink is closed and empty
+     */
+    private void flush()
+    {
+        String chunk = this.takeChunk();
+        if (chunk != null)
+            this.target.accept(chunk);
+        else if (this.isFinished())
+            this.timer.stop();
+    }
+
+    /**
+     * Removes the next chunk of waiting text, ending it after the last line
+     * break within the frame limit if there is one
+     *
+     * @return the chunk, or null if no text is waiting
+     */
+    private synchronized String takeChunk()
+    {
+        int available = this.pending.length() - this.flushedTo;
+        if (available == 0)
+            return null;
+
+        int end = this.pending.length();
+        if (available > this.frameChars)
+        {
+            end = this.flushedTo + this.frameChars;
+            int lineEnd = this.pending.lastIndexOf("\n", end - 1);
+            if (lineEnd >= this.flushedTo)
+                end = lineEnd + 1;
+        }
+
+        String chunk = this.pending.substring(this.flushedTo, end);
+        this.flushedTo = end;
+
+        //drop the appended text once it is most of the buffer, so copying it stays cheap
+        if (this.flushedTo > this.pending.length() / 2)
+        {
+            this.pending.delete(0, this.flushedTo);
+            this.flushedTo = 0;
+        }
+        this.notifyAll();
+        return chunk;
+    }
+
+    /**
+     * Returns whether no more text will be appended
+     */
+    private synchronized boolean isFinished()
+    {
+        return this.cancelled || (this.closed && this.pending.length() == this.flushedTo);
+    }
+}
@@ -17,6 +17,7 @@ import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.antlr.v4.runtime.tree.TerminalNode;
+import proj9AbulhabFengMaoSavillo.DocumentText;
 import proj9AbulhabFengMaoSavillo.JavaCodeArea;
 import proj9AbulhabFengMaoSavillo.JavaTabPane;
 import proj9AbulhabFengMaoSavillo.antlr.Java8BaseListener;
@@ -94,12 +95,13 @@ public class StructureViewController
 
     /**
      * Parses a file thereby storing contents as TreeItems in our special tree.
+     * The contents are read straight from the snapshot, not copied into a String first.
      *
      * @param fileContents the file to be parsed
      */
-    public void generateStructureTree(String fileContents)
+    public void generateStructureTree(DocumentText fileContents)
     {
-        TreeItem<String> newRoot = new TreeItem<>(fileContents);
+        TreeItem<String> newRoot = new TreeItem<>();
         this.setRootNode(newRoot);
 
         if (this.thread != null)
@@ -128,7 +130,7 @@ public class StructureViewController
             @Override
             protected Object call() throws Exception
             {
-                Java8Lexer lexer = new Java8Lexer(CharStreams.fromString(fileContents));
+                Java8Lexer lexer = new Java8Lexer(CharStreams.fromReader(fileContents.openReader()));
                 lexer.removeErrorListeners();
 
                 CommonTokenStream tokens = new CommonTokenStream(lexer);
@@ -10,13 +10,16 @@ package proj9AbulhabFengMaoSavillo.controllers;
 
 import javafx.application.Platform;
 import org.fxmisc.richtext.StyleClassedTextArea;
-import javafx.event.Event;
 import java.util.List;
 import java.io.*;
+import java.util.concurrent.CancellationException;
 import javafx.concurrent.Task;
+import javafx.scene.control.ProgressBar;
+import proj9AbulhabFengMaoSavillo.DocumentText;
 import proj9AbulhabFengMaoSavillo.JavaCodeArea;
-import proj9AbulhabFengMaoSavillo.bantam.lexer.Scanner;
-import proj9AbulhabFengMaoSavillo.bantam.lexer.Token;
+import proj9AbulhabFengMaoSavillo.bantam.lexer.CancellationToken;
+import proj9AbulhabFengMaoSavillo.bantam.lexer.TokenBuffer;
+import proj9AbulhabFengMaoSavillo.bantam.lexer.TokenCache;
 import proj9AbulhabFengMaoSavillo.bantam.util.Error;
 import proj9AbulhabFengMaoSavillo.bantam.util.ErrorHandler;
 
@@ -31,6 +34,11 @@ import proj9AbulhabFengMaoSavillo.bantam.util.ErrorHandler;
  */
 public class ToolBarController
 {
+    /**
+     * The line that ends the token list of a scan cut off by a newer one
+     */
+    private static final String SCAN_CANCELLED = "--- scan cancelled ---\n";
+
     /**
      * Console defined in Main.fxml
      */
@@ -40,7 +48,19 @@ public class ToolBarController
      */
     private FileMenuController fileMenuController;
 
-    private Thread thread;
+    /**
+     * Progress bar defined in Main.fxml, showing how far the current scan has got
+     */
+    private ProgressBar progressBar;
+
+    /**
+     * The scan task started last, the token that cancels its scanner and the
+     * sinks its output goes through
+     */
+    private Task<?> scanTask;
+    private CancellationToken cancellationToken;
+    private OutputSink tokenSink;
+    private OutputSink consoleSink;
 
     /**
      * Sets the console pane.
@@ -52,6 +72,16 @@ public class ToolBarController
         this.console = console;
     }
 
+    /**
+     * Sets the progress bar showing the progress of scans.
+     *
+     * @param progressBar ProgressBar defined in Main.fxml
+     */
+    public void setProgressBar(ProgressBar progressBar)
+    {
+        this.progressBar = progressBar;
+    }
+
     /**
      * Sets the FileMenuController.
      *
@@ -63,92 +93,109 @@ public class ToolBarController
     }
 
     /**
-     * Handles when the scan button is clicked; the current file is run through a lexical scanner.
+     * Handles when the scan button is clicked; the text of the current code area,
+     * saved or not, is run through a lexical scanner.
      *
-     * @param event the event triggered
-     * @param file the current file
+     * @param codeArea the current code area
+     * @param file the current file, or null if it has never been saved
      */
-    public void handleScanButtonAction(Event event, File file)
+    public void handleScanButtonAction(JavaCodeArea codeArea, File file)
     {
-        // user select cancel button
-        if (this.fileMenuController.checkSaveBeforeCompile() == 2)
+        // A new scan replaces the last one, if any, without waiting for it;
+        // the console is shared, but the last scan's tab keeps its output unless it was cut off
+        if (this.scanTask != null)
         {
-            event.consume();
+            if (this.scanTask.isRunning())
+                this.tokenSink.cancel(SCAN_CANCELLED);
+            this.cancellationToken.cancel();
+            this.scanTask.cancel();
+            this.consoleSink.cancel();
         }
-        else
-        {
-            if (this.thread != null)
-            {
-                if (this.thread.isAlive())
-                {
-                    try
-                    {
-                        this.thread.join(3000);
-                    }
-                    catch (Exception e)
-                    {
-                        System.out.println("threading exception");
-                    }
-                    finally
-                    {
-                        if (!this.thread.isInterrupted())
-                            this.thread.interrupt();
-                        this.thread = null;
-                    }
-                }
-            }
 
-            // Clear the console before printing
-            Platform.runLater(() ->
-                              {
-                                  this.console.clear();
-                              });
+        // Clear the console before printing
+        Platform.runLater(() ->
+                          {
+                              this.console.clear();
+                          });
+
+        // Scan a snapshot of the text as it is now, straight from memory
+        String filename = file != null ? file.getAbsolutePath() : "Untitled";
+        DocumentText text = codeArea.getTextSnapshot();
+        ErrorHandler errorHandler = new ErrorHandler();
+        CancellationToken cancellationToken = new CancellationToken();
 
-            // Request that the filemenucontroller create a new tab in which to print
-            JavaCodeArea outputArea = requestAreaForOutput();
-            Scanner scanner = new Scanner(file.getAbsolutePath(), new ErrorHandler());
+        // Request that the filemenucontroller create a new tab in which to print
+        JavaCodeArea outputArea = requestAreaForOutput();
 
-            Task task = new Task()
+        // Gather the output off the FX thread and append it a chunk per frame
+        OutputSink tokenSink = new OutputSink(outputArea::appendText);
+        OutputSink consoleSink = new OutputSink(this.console::appendText);
+
+        Task task = new Task()
+        {
+            @Override
+            protected Object call() throws Exception
             {
-                @Override
-                protected Object call() throws Exception
+                try
                 {
-                    // Scan the file and retrieve each token
-                    Token currentToken = scanner.scan();
-                    while (currentToken.kind != Token.Kind.EOF)
+                    // Scan the file, or take its tokens from the cache if it is unchanged, and print each token
+                    TokenBuffer tokens = TokenCache.getDefault().scan(text, filename, errorHandler, cancellationToken,
+                                                                      (consumed, total) -> this.updateProgress(consumed, total));
+                    // The sink drops text once cancelled, so stop building it as well
+                    for (int i = 0; i < tokens.size(); i++)
                     {
-                        String s = currentToken.toString();
-                        Platform.runLater(() -> outputArea.appendText(s + "\n"));
-                        currentToken = scanner.scan();
+                        cancellationToken.throwIfCancelled();
+                        tokenSink.append(tokens.getToken(i) + "\n");
                     }
+                    // The token list is complete, so a later cancellation leaves it whole
+                    tokenSink.close();
 
-                    outputArea.setEditable(true);  // set the codeArea to editable after we're done writing to it
-
-                    List<Error> errorList = scanner.getErrorList();
+                    List<Error> errorList = errorHandler.getErrorList();
                     int errorCount = errorList.size();
                     if (errorCount == 0)
                     {
-                        Platform.runLater(() -> console.appendText("No errors detected\n"));
+                        consoleSink.append("No errors detected\n");
                     }
                     else
                     {
-                        errorList.forEach((error) ->
-                                          {
-                                              Platform.runLater(() -> console.appendText(error.toString() + "\n"));
-                                          });
-                        String msg = String.format("Found %d error(s)", errorCount);
-                        Platform.runLater(() -> console.appendText(msg));
+                        for (Error error : errorList)
+                        {
+                            cancellationToken.throwIfCancelled();
+                            consoleSink.append(error.toString() + "\n");
+                        }
+                        consoleSink.append(String.format("Found %d error(s)", errorCount));
                     }
-
-                    return null;
                 }
-            };
-
-            this.thread = new Thread(task);
-            this.thread.setDaemon(true);
-            this.thread.start();
-        }
+                catch (InterruptedException | CancellationException e)
+                {
+                    // A newer scan replaced this one, so its output is no longer wanted;
+                    // a token list cut off says so in its tab
+                    tokenSink.cancel(SCAN_CANCELLED);
+                    consoleSink.cancel();
+                }
+                finally
+                {
+                    tokenSink.close();
+                    consoleSink.close();
+                }
 
+                // set the codeArea to editable after we're done writing to it
+                Platform.runLater(() -> outputArea.setEditable(true));
+                return null;
+            }
+        };
+
+        // Show the progress of this scan while it runs
+        this.progressBar.progressProperty().bind(task.progressProperty());
+        this.progressBar.visibleProperty().bind(task.runningProperty());
+
+        this.scanTask = task;
+        this.cancellationToken = cancellationToken;
+        this.tokenSink = tokenSink;
+        this.consoleSink = consoleSink;
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
     }
 
     /**